@@ -3,15 +3,16 @@ package org.nerd.kid;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
-import com.google.common.collect.Sets;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.nerd.kid.data.WikidataElement;
 import org.nerd.kid.data.WikidataElementInfos;
+import org.nerd.kid.extractor.FeatureSchema;
 import org.nerd.kid.extractor.wikidata.WikibaseWrapper;
+import org.nerd.kid.extractor.wikidata.WikidataDumpParser;
 import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
+import org.nerd.kid.model.ForestEngineType;
 import org.nerd.kid.model.WikidataNERPredictor;
 
 import java.io.*;
@@ -19,9 +20,6 @@ import java.util.*;
 
 public class WikidataJsonProcessor {
     public static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
-    public static Set<String> KV_FEATURE_PROPERTIES = Sets.newHashSet(
-            "P21", "P279", "P31", "P361"
-    );
 
 
     static {
@@ -33,52 +31,18 @@ public class WikidataJsonProcessor {
         OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
     }
 
+    // number of elements read before being predicted in a single batch
+    private static final int BATCH_SIZE = 10000;
+
+    /* the element of an entity of the dump with the statements of the features of the schema only (see WikidataDumpParser),
+    its properties being the features without value and its property-value pairs the features with value
+    */
     public static WikidataElement fromWikidataJson(String inputInJson) throws IOException {
-        JsonNode root = OBJECT_MAPPER.readTree(inputInJson);
-        WikidataElement element = new WikidataElement();
-        String wikidataId = root.get("id").asText();
-        element.setId(wikidataId);
-        try {
-            JsonNode labels = root.get("labels");
-            if (labels.has("en")) {
-                JsonNode en = labels.get("en");
-                String label = en.get("value").asText();
-                label = label.replace(",", ";");
-                label = label.replace("\"", "");
-                label = label.replace("\'", "");
-                element.setLabel(label);
-            }
-        } catch (Exception e) {
+        WikidataElement element = WikidataDumpParser.fromJson(inputInJson, FeatureSchema.getInstance());
+        if (element.getLabel() == null) {
             element.setLabel("");
         }
-        JsonNode claims = root.get("claims");
-        Map<String, List<String>> properties = element.getProperties();
-        List<String> noValueProperties = element.getPropertiesNoValue();
-        for (Iterator<String> it = claims.fieldNames(); it.hasNext(); ) {
-            String property = it.next();
-            if (!KV_FEATURE_PROPERTIES.contains(property)) {
-                noValueProperties.add(property);
-                continue;
-            }
-            JsonNode snaks = claims.get(property);
-            List<String> values = new ArrayList<>();
-            properties.put(property, values);
-
-            for (JsonNode snak : snaks) {
-                try {
-                    JsonNode mainsnak = snak.get("mainsnak");
-                    String value = null;
-                    if ("wikibase-item".equals(mainsnak.get("datatype").asText())) {
-                        value = mainsnak.get("datavalue").get("value").get("id").asText();
-                    }
-                    properties.get(property).add(value);
-                } catch (Exception e) {
-                    System.out.println("Hit Exception when parsing " + wikidataId + ":" + property);
-                    continue;
-                }
-            }
-        }
-
+        element.setPropertiesNoValue(new ArrayList<>(element.getProperties().keySet()));
         return element;
     }
 
@@ -88,7 +52,8 @@ public class WikidataJsonProcessor {
         }
         // statements collected from entity-fishing API Service (http://nerd.huma-num.fr/nerd/service/kb/concept)
         WikidataFetcherWrapper wrapper = new WikibaseWrapper();
-        WikidataNERPredictor predictor = new WikidataNERPredictor(wrapper);
+        // the bulk classification evaluates the forest with the bitvectors of the leaves, unless set with -Dnerdkid.engine
+        WikidataNERPredictor predictor = new WikidataNERPredictor(wrapper, ForestEngineType.fromSystemProperty(ForestEngineType.QUICKSCORER));
         InputStream inputStream;
         if (args[0].endsWith(".bz2")) {
             inputStream = new BZip2CompressorInputStream(new FileInputStream(args[0]));
@@ -98,6 +63,7 @@ public class WikidataJsonProcessor {
         BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
         BufferedWriter bw = new BufferedWriter(new FileWriter(args[1]));
         String line;
+        List<WikidataElement> batch = new ArrayList<>(BATCH_SIZE);
         int ln = 0;
         int printInterval = 1;
         while ((line = br.readLine()) != null) {
@@ -114,11 +80,20 @@ public class WikidataJsonProcessor {
             if (line.endsWith(",")) {
                 line = line.substring(0, line.length() - 1);
             }
-            WikidataElement element = fromWikidataJson(line);
-            WikidataElementInfos infos = predictor.predict(element);
-            bw.write(element.getId() + "\t" + infos.getPredictedClass() + "\n");
+            batch.add(fromWikidataJson(line));
+            if (batch.size() == BATCH_SIZE) {
+                writePredictions(predictor, batch, bw);
+            }
         }
+        writePredictions(predictor, batch, bw);
         br.close();
         bw.close();
     }
+
+    private static void writePredictions(WikidataNERPredictor predictor, List<WikidataElement> batch, BufferedWriter bw) throws IOException {
+        for (WikidataElementInfos infos : predictor.predictBatch(batch)) {
+            bw.write(infos.getWikidataId() + "\t" + infos.getPredictedClass() + "\n");
+        }
+        batch.clear();
+    }
 }
@@ -1,6 +1,7 @@
 package org.nerd.kid.arff;
 
 
+import org.nerd.kid.data.FeatureVector;
 import org.nerd.kid.data.WikidataElementInfos;
 import org.nerd.kid.service.NerdKidPaths;
 import org.slf4j.Logger;
@@ -159,9 +160,9 @@ public class ArffFileGenerator {
     public ArffFileGenerator addSingle(WikidataElementInfos result) {
         StringBuilder line = new StringBuilder();
 
-        Double[] features = result.getFeatureVector();
-        for (Double feature : features) {
-            line.append(String.valueOf(feature.intValue())).append(",");
+        FeatureVector features = result.getFeatureVector();
+        for (int i = 0; i < features.size(); i++) {
+            line.append(features.get(i) ? '1' : '0').append(",");
         }
         line.append(result.getRealClass()).append("\n");
 
@@ -3,11 +3,15 @@ package org.nerd.kid.arff;
 import au.com.bytecode.opencsv.CSVWriter;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
+import org.nerd.kid.data.FeatureVector;
 import org.nerd.kid.data.WikidataElementInfos;
 import org.nerd.kid.extractor.ClassExtractor;
-import org.nerd.kid.extractor.FeatureFileExtractor;
 import org.nerd.kid.extractor.FeatureDataExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.nerd.kid.extractor.wikidata.DiskCacheFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.LmdbFetcherWrapper;
 import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
 import org.nerd.kid.service.NerdKidPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,19 +21,20 @@ import java.nio.file.*;
 import java.util.*;
 
 
-public class TrainerGenerator {
+public class TrainerGenerator implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(TrainerGenerator.class);
     ArffFileGenerator arffFileGenerator = new ArffFileGenerator();
-    NerdKBFetcherWrapper nerdKBFetcherWrapper = new NerdKBFetcherWrapper();
-    FeatureDataExtractor featureWikidataExtractor = new FeatureDataExtractor(nerdKBFetcherWrapper);
-    FeatureFileExtractor featureFileExtractor = new FeatureFileExtractor();
+    // created by the first fetch only, extractData and listFiles don't need it
+    WikidataFetcherWrapper wikidataFetcherWrapper;
+    FeatureDataExtractor featureWikidataExtractor;
+    FeatureSchema featureSchema = FeatureSchema.getInstance();
     ClassExtractor classExtractor = new ClassExtractor();
 
 
     public void run(String fileOutput) throws Exception {
         // get the list of features
-        List<String> resultFeature = featureFileExtractor.loadFeatures();
-        List<String> resultFeatureNoValue = featureFileExtractor.loadFeaturesNoValue();
+        List<String> resultFeature = featureSchema.getFeatures();
+        List<String> resultFeatureNoValue = featureSchema.getFeaturesNoValue();
 
         // get the list classes
         List<String> resultClass = classExtractor.loadClasses();
@@ -54,12 +59,15 @@ public class TrainerGenerator {
             training.addAll(elements);
         }
 
-        // iterate for every WikidataId got from the csv file to get the feature
-        for (WikidataElementInfos element : training) {
+        // the features of every WikidataId got from the csv file, fetched in batches
+        List<WikidataElementInfos> trainingFeatures = featureWikidataExtractor().getFeaturesWikidata(wikidataIds(training));
+        for (int i = 0; i < training.size(); i++) {
+            WikidataElementInfos element = training.get(i);
             try {
-                WikidataElementInfos wikidataFeatures = featureWikidataExtractor.getFeatureWikidata(element.getWikidataId());
-                // arff file for training or testing won't involve any entity that doesn't exist in Wikidata knowledge base
-                if (wikidataFeatures != null) {
+                WikidataElementInfos wikidataFeatures = trainingFeatures.get(i);
+                // arff file for training or testing won't involve any entity that doesn't exist in Wikidata knowledge base,
+                // nor any entity whose features couldn't be fetched
+                if (wikidataFeatures.getFeatureVector() != null) {
                     wikidataFeatures.setRealClass(element.getRealClass());
                     arffFileGenerator.addSingle(wikidataFeatures);
                 } else
@@ -102,6 +110,24 @@ public class TrainerGenerator {
 
     }
 
+    // the local knowledge base of -Dnerdkid.lmdb.directory if there is one, entity-fishing cached on disk otherwise
+    private FeatureDataExtractor featureWikidataExtractor() {
+        if (featureWikidataExtractor == null) {
+            wikidataFetcherWrapper = LmdbFetcherWrapper.fromSystemProperty(
+                    () -> DiskCacheFetcherWrapper.fromSystemProperties(new NerdKBFetcherWrapper()));
+            featureWikidataExtractor = new FeatureDataExtractor(wikidataFetcherWrapper);
+        }
+        return featureWikidataExtractor;
+    }
+
+    private static List<String> wikidataIds(List<WikidataElementInfos> elements) {
+        List<String> wikidataIds = new ArrayList<>(elements.size());
+        for (WikidataElementInfos element : elements) {
+            wikidataIds.add(element.getWikidataId());
+        }
+        return wikidataIds;
+    }
+
     public static List<Path> listFiles(Path dir, String type) throws IOException {
         List<Path> result = new ArrayList<>();
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, type)) {
@@ -118,8 +144,8 @@ public class TrainerGenerator {
         String csvDataPath = NerdKidPaths.RESULT_CSV  + "/" + fileOutput;
         CSVWriter csvWriter = null;
         // get the list of features
-        List<String> resultFeature = featureFileExtractor.loadFeatures();
-        List<String> resultFeatureNoValue = featureFileExtractor.loadFeaturesNoValue();
+        List<String> resultFeature = featureSchema.getFeatures();
+        List<String> resultFeatureNoValue = featureSchema.getFeaturesNoValue();
 
         try {
             csvWriter = new CSVWriter(new FileWriter(csvDataPath), ',', CSVWriter.NO_QUOTE_CHARACTER);
@@ -141,10 +167,13 @@ public class TrainerGenerator {
                 training.addAll(elements);
             }
 
-            for (WikidataElementInfos element : training) {
+            List<WikidataElementInfos> trainingFeatures = featureWikidataExtractor().getFeaturesWikidata(wikidataIds(training));
+            for (int row = 0; row < training.size(); row++) {
+                WikidataElementInfos element = training.get(row);
                 try {
-                    WikidataElementInfos wikidataFeatures = featureWikidataExtractor.getFeatureWikidata(element.getWikidataId());
-                    if (wikidataFeatures != null) {
+                    WikidataElementInfos wikidataFeatures = trainingFeatures.get(row);
+                    // the entities whose features couldn't be fetched aren't written
+                    if (wikidataFeatures.getFeatureVector() != null) {
                         wikidataFeatures.setRealClass(element.getRealClass());
 
                         // replace commas in Wikidata labels with the underscore to avoid incorrect extraction in the Csv file
@@ -157,11 +186,9 @@ public class TrainerGenerator {
                         List<String> dataFeatureGenerated = new ArrayList<String>();
                         List<String> dataCombined = new ArrayList<String>();
 
-                        Double[] features = wikidataFeatures.getFeatureVector();
-                        if (features != null) {
-                            for (Double feature : features) {
-                                dataFeatureGenerated.add(Integer.toString(feature.intValue()));
-                            }
+                        FeatureVector features = wikidataFeatures.getFeatureVector();
+                        for (int i = 0; i < features.size(); i++) {
+                            dataFeatureGenerated.add(features.get(i) ? "1" : "0");
                         }
                         dataCombined.addAll(dataGenerated);
                         dataCombined.addAll(dataFeatureGenerated);
@@ -192,12 +219,23 @@ public class TrainerGenerator {
         String fileOutputArff = "Training.arff";
         String fileOutputCsv = "ResultFromArffGenerator.csv";
 
-        TrainerGenerator trainerGenerator = new TrainerGenerator();
+        // the elements fetched are kept on disk for the next runs
+        try (TrainerGenerator trainerGenerator = new TrainerGenerator()) {
+            trainerGenerator.run(fileOutputArff);
 
-        trainerGenerator.run(fileOutputArff);
+            // create CSV file to check the result of data collected
+            trainerGenerator.saveResultCsvFormat(fileOutputCsv);
+        }
+    }
 
-        // create CSV file to check the result of data collected
-        trainerGenerator.saveResultCsvFormat(fileOutputCsv);
+    // the fetcher of the elements, if some were fetched
+    @Override
+    public void close() throws IOException {
+        if (wikidataFetcherWrapper instanceof Closeable) {
+            ((Closeable) wikidataFetcherWrapper).close();
+        }
+        wikidataFetcherWrapper = null;
+        featureWikidataExtractor = null;
     }
 
 }
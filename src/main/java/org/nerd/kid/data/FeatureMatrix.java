@@ -0,0 +1,111 @@
+package org.nerd.kid.data;
+
+/*
+Feature Matrix class is the binary features (0-1) of a batch of Wikidata elements in a single contiguous long[],
+every row is the bitset of a feature vector: the words of the row r are [r * wordsPerRow, (r + 1) * wordsPerRow)
+* */
+
+public final class FeatureMatrix {
+    private final int rows;
+
+    private final int size;
+
+    private final int wordsPerRow;
+
+    private final long[] words;
+
+    public FeatureMatrix(int rows, int size) {
+        this.rows = rows;
+        this.size = size;
+        this.wordsPerRow = FeatureVector.wordCount(size);
+        this.words = new long[rows * wordsPerRow];
+    }
+
+    public static FeatureMatrix fromArrays(double[][] features) {
+        int size = features.length == 0 ? 0 : features[0].length;
+        FeatureMatrix featureMatrix = new FeatureMatrix(features.length, size);
+        for (int row = 0; row < features.length; row++) {
+            for (int i = 0; i < size; i++) {
+                if (features[row][i] > 0) {
+                    featureMatrix.set(row, i);
+                }
+            }
+        }
+        return featureMatrix;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    // number of features of every row
+    public int size() {
+        return size;
+    }
+
+    public int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    // index of the first word of a row in words()
+    public int offset(int row) {
+        return row * wordsPerRow;
+    }
+
+    public void set(int row, int index) {
+        checkIndex(row, index);
+        words[offset(row) + (index >>> 6)] |= 1L << index;
+    }
+
+    public boolean get(int row, int index) {
+        checkIndex(row, index);
+        return (words[offset(row) + (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    // copy a feature vector of the same size into a row
+    public void setRow(int row, FeatureVector features) {
+        if (features.size() != size) {
+            throw new IllegalArgumentException("The rows have " + size + " features, got " + features.size());
+        }
+        System.arraycopy(features.words(), 0, words, offset(row), wordsPerRow);
+    }
+
+    // copy of a row, for the engines that can only predict a feature vector
+    public FeatureVector row(int row) {
+        FeatureVector features = new FeatureVector(size);
+        System.arraycopy(words, offset(row), features.words(), 0, wordsPerRow);
+        return features;
+    }
+
+    // fill a dense array of 0-1 with the features of a row, for Smile, without copying the row into a feature vector
+    public double[] toArray(int row, double[] buffer) {
+        double[] result = (buffer != null && buffer.length == size) ? buffer : new double[size];
+        int offset = offset(row);
+        for (int i = 0; i < size; i++) {
+            result[i] = (words[offset + (i >>> 6)] & (1L << i)) != 0 ? 1.0 : 0.0;
+        }
+        return result;
+    }
+
+    // true if there isn't any feature found in the row, such elements are not predicted and stated as OTHER
+    public boolean isEmpty(int row) {
+        int offset = offset(row);
+        for (int w = offset; w < offset + wordsPerRow; w++) {
+            if (words[w] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // backing words of the matrix, read directly by the inference engines; must not be modified
+    public long[] words() {
+        return words;
+    }
+
+    private void checkIndex(int row, int index) {
+        if (row < 0 || row >= rows || index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Feature (" + row + ", " + index + ") out of range [0, " + rows + ") x [0, " + size + ")");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.nerd.kid.data;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Arrays;
+
+/*
+Feature Vector class is a compact binary representation of the features (0-1) of a Wikidata element,
+every feature is a bit of a long[] bitset, the bit i being the column i of the feature mapper files
+* */
+
+public final class FeatureVector {
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+
+    private final int size;
+
+    private final long[] words;
+
+    public FeatureVector(int size) {
+        this.size = size;
+        this.words = new long[wordCount(size)];
+    }
+
+    // number of long words needed to store a vector of the given size
+    public static int wordCount(int size) {
+        return (size + 63) >>> ADDRESS_BITS_PER_WORD;
+    }
+
+    // the JSON form of the vector (see toJson)
+    @JsonCreator
+    public static FeatureVector fromArray(double[] features) {
+        FeatureVector featureVector = new FeatureVector(features.length);
+        for (int i = 0; i < features.length; i++) {
+            if (features[i] > 0) {
+                featureVector.set(i);
+            }
+        }
+        return featureVector;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void set(int index) {
+        checkIndex(index);
+        words[index >>> ADDRESS_BITS_PER_WORD] |= 1L << index;
+    }
+
+    public boolean get(int index) {
+        checkIndex(index);
+        return (words[index >>> ADDRESS_BITS_PER_WORD] & (1L << index)) != 0;
+    }
+
+    // true if there isn't any feature found, such elements are not predicted and stated as OTHER
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // index of the first feature set from the given index (inclusive), -1 if there isn't any
+    public int nextSetBit(int fromIndex) {
+        if (fromIndex >= size) {
+            return -1;
+        }
+        int u = fromIndex >>> ADDRESS_BITS_PER_WORD;
+        long word = words[u] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                int index = (u << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+                return index < size ? index : -1;
+            }
+            if (++u == words.length) {
+                return -1;
+            }
+            word = words[u];
+        }
+    }
+
+    // backing words of the bitset, read directly by the inference engines; must not be modified
+    public long[] words() {
+        return words;
+    }
+
+    /* fill a dense array of 0-1 with the features, for the libraries (Smile) that can only predict with double[]
+    the buffer is reused by the caller, it is allocated only if it is missing or of another size
+    */
+    public double[] toArray(double[] buffer) {
+        double[] result = (buffer != null && buffer.length == size) ? buffer : new double[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = (words[i >>> ADDRESS_BITS_PER_WORD] & (1L << i)) != 0 ? 1.0 : 0.0;
+        }
+        return result;
+    }
+
+    // the JSON form of the vector, the array of 0.0-1.0 given by the service before the bitset
+    @JsonValue
+    public double[] toJson() {
+        return toArray(null);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Feature index " + index + " out of range [0, " + size + ")");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FeatureVector)) return false;
+        FeatureVector that = (FeatureVector) o;
+        return size == that.size && Arrays.equals(words, that.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            sb.append(get(i) ? '1' : '0');
+        }
+        return sb.toString();
+    }
+}
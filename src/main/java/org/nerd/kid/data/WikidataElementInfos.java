@@ -1,11 +1,31 @@
 package org.nerd.kid.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
+import java.util.Map;
 
 public class WikidataElementInfos {
     private String wikidataId, label, realClass, predictedClass;
 
-    private Double[] featureVector;
+    private FeatureVector featureVector;
+
+    // share of the votes of the trees by class (descending), only when the scores of the prediction are asked
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Double> classDistribution;
+
+    // the k classes having the most votes, the predicted class first
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> topClasses;
+
+    // difference between the shares of votes of the first two classes
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double margin;
+
+    // version of the model which made the prediction (see LoadedModel), not part of the result
+    @JsonIgnore
+    private String modelVersion;
 
     public String getWikidataId() {
         return wikidataId;
@@ -39,12 +59,44 @@ public class WikidataElementInfos {
         this.predictedClass = predictedClass;
     }
 
-    public Double[] getFeatureVector() {
+    public FeatureVector getFeatureVector() {
         return featureVector;
     }
 
-    public void setFeatureVector(Double[] featureVector) {
+    public void setFeatureVector(FeatureVector featureVector) {
         this.featureVector = featureVector;
     }
 
+    public Map<String, Double> getClassDistribution() {
+        return classDistribution;
+    }
+
+    public void setClassDistribution(Map<String, Double> classDistribution) {
+        this.classDistribution = classDistribution;
+    }
+
+    public List<String> getTopClasses() {
+        return topClasses;
+    }
+
+    public void setTopClasses(List<String> topClasses) {
+        this.topClasses = topClasses;
+    }
+
+    public Double getMargin() {
+        return margin;
+    }
+
+    public void setMargin(Double margin) {
+        this.margin = margin;
+    }
+
+    @JsonIgnore
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
 }
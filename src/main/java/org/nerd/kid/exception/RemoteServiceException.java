@@ -5,4 +5,8 @@ public class RemoteServiceException extends Exception {
         // call constructor parent
         super(str);
     }
+
+    public RemoteServiceException(String str, Throwable problem){
+        super(str, problem);
+    }
 }
@@ -1,6 +1,6 @@
 package org.nerd.kid.extractor;
 
-import com.google.common.collect.Sets;
+import org.nerd.kid.data.FeatureVector;
 import org.nerd.kid.data.WikidataElement;
 import org.nerd.kid.data.WikidataElementInfos;
 import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
@@ -8,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /*
  * extract features (properties and values) of WikidataId directly from Wikidata or Nerd knowledge base
@@ -17,92 +18,43 @@ public class FeatureDataExtractor {
 
     private WikidataFetcherWrapper wikidataFetcherWrapper = null;
 
-    // for reading feature pattern in feature mapper files in '/resources' directory
-    private FeatureFileExtractor featureFileExtractor = new FeatureFileExtractor();
-    private List<String> featuresNoValueList = featureFileExtractor.loadFeaturesNoValue();
-    private List<String> featuresList = featureFileExtractor.loadFeatures();
+    // feature pattern of the feature mapper files in '/resources' directory, shared by every extractor
+    private final FeatureSchema featureSchema;
 
     public FeatureDataExtractor() {
+        this.featureSchema = FeatureSchema.getInstance();
     }
 
     public FeatureDataExtractor(WikidataFetcherWrapper wikidataFetcherWrapper) {
+        this();
         this.wikidataFetcherWrapper = wikidataFetcherWrapper;
     }
 
+    public FeatureSchema getFeatureSchema() {
+        return featureSchema;
+    }
+
     public int countFeatureElement() {
         /* count the number of features based on '/resources/feature_mapper.csv'
             and number of features based on the '/resources/feature_mapper_no_value.csv'
          */
-        int nbOfFeatures = featuresList.size() + featuresNoValueList.size();
-        return nbOfFeatures;
+        return featureSchema.size();
     }
 
-    public Double[] getFeatureWikidata(List<String> propertiesNoValue) {
-
-        // get the features from feature mapper list files
-        Double[] featureVector = new Double[featuresNoValueList.size()];
-        Set<String> propertiesSet = Sets.newHashSet(propertiesNoValue);
-
+    public FeatureVector getFeatureWikidata(List<String> propertiesNoValue) {
         // put 1 if property for entities in Wikidata match with the list of 'resources/feature_mapper_no_value.csv', otherwise put 0
-        int idx = 0;
-        for (String propertyNoValue : featuresNoValueList) {
-            // search the existance of a certain property in the list of property
-            if (propertiesSet.contains(propertyNoValue)) {
-                featureVector[idx] = 1.0;
-            } else {
-                featureVector[idx] = 0.0;
-            }
-            idx++;
-        }
-
-        return featureVector;
+        return featureSchema.toFeatureVectorNoValue(propertiesNoValue);
     }
 
-    public Double[] getFeatureWikidata(Map<String, List<String>> properties) {
-
-        Double[] featureVector = new Double[featuresList.size()];
-
-        // collect the result of properties-values from the parameter
-        Set<String> propertyValueKB = Sets.newHashSet();
-        for (Map.Entry<String, List<String>> propertyGot : properties.entrySet()) {
-            String property = propertyGot.getKey();
-            List<String> values = propertyGot.getValue();
-            // if values for the property exist
-            if (values != null) {
-                for (String value : values) {
-                    String propertyValue = property + "_" + value;
-                    propertyValueKB.add(propertyValue);
-                }
-            }
-        }
-
-        int idx = 0;
+    public FeatureVector getFeatureWikidata(Map<String, List<String>> properties) {
         // put 1 if property-value for entities in Wikidata match with the list of 'resources/feature_mapper.csv', otherwise put 0
-        for (String propertyValue : featuresList) {
-            // search the existance of a certain property-value in the list of property-value
-            if (propertyValueKB.contains(propertyValue)) {
-                featureVector[idx] = 1.0;
-            } else {
-                featureVector[idx] = 0.0;
-            }
-            idx++;
-        }
-
-        return featureVector;
+        return featureSchema.toFeatureVectorWithValue(properties);
     }
 
     // method to get wikidataId, label, real-predicted class, and properties in binary format (0-1)
     public WikidataElementInfos getFeatureWikidata(String wikidataId) {
-        // count the number of features
-        int nbOfFeatures = countFeatureElement();
-
         // get the element based on the wrapper whether from Wikidata or Nerd API
-        WikidataElement wikidataElement = new WikidataElement();
-        WikidataElementInfos wikidataElementInfos = new WikidataElementInfos();
-        String label = null;
-        Map<String, List<String>> propertiesWiki = new HashMap<>();
-        List<String> featuresMap = new ArrayList<>();
-        List<String> featuresNoValueList = new ArrayList<>();
+        WikidataElement wikidataElement = null;
         try {
             wikidataElement = wikidataFetcherWrapper.getElement(wikidataId); // wikidata Id, label, properties-values
         } catch (RuntimeException e) {
@@ -110,67 +62,53 @@ public class FeatureDataExtractor {
         } catch (Exception e) {
             LOGGER.info("Some errors encountered when getting some elements for a Wikidata Id \"" + wikidataId + "\"", e);
         }
+        return toFeatureWikidata(wikidataId, wikidataElement);
+    } // end of method 'getFeatureWikidata'
+
+    // the same without blocking, the fetch of the element being asynchronous (see WikidataFetcherWrapper.getElementAsync)
+    public CompletableFuture<WikidataElementInfos> getFeatureWikidataAsync(String wikidataId) {
+        return wikidataFetcherWrapper.getElementAsync(wikidataId).handle((wikidataElement, e) -> {
+            if (e != null) {
+                LOGGER.info("Some errors encountered when getting some elements for a Wikidata Id \"" + wikidataId + "\"", e);
+                return toFeatureWikidata(wikidataId, null);
+            }
+            return toFeatureWikidata(wikidataId, wikidataElement);
+        });
+    }
+
+    // the same for many Wikidata Ids, fetched in batches (see WikidataFetcherWrapper.getElements), in the order of the Ids
+    public List<WikidataElementInfos> getFeaturesWikidata(List<String> wikidataIds) {
+        Map<String, WikidataElement> wikidataElements = wikidataFetcherWrapper.getElements(wikidataIds);
+        List<WikidataElementInfos> wikidataElementInfosList = new ArrayList<>(wikidataIds.size());
+        for (String wikidataId : wikidataIds) {
+            if (!wikidataElements.containsKey(wikidataId)) {
+                LOGGER.info("Some elements couldn't be got for a Wikidata Id \"" + wikidataId + "\"");
+            }
+            wikidataElementInfosList.add(toFeatureWikidata(wikidataId, wikidataElements.get(wikidataId)));
+        }
+        return wikidataElementInfosList;
+    }
+
+    /* the element couldn't be fetched if it is null: there isn't any feature vector then, so that it isn't predicted
+    (and not taken for an element without feature, predicted as OTHER)
+    */
+    private WikidataElementInfos toFeatureWikidata(String wikidataId, WikidataElement wikidataElement) {
+        WikidataElementInfos wikidataElementInfos = new WikidataElementInfos();
         if (wikidataElement != null) {
             // set information of id, label, predicted class, features, real class
             wikidataElementInfos.setWikidataId(wikidataId);
-            label = wikidataElement.getLabel();
+            String label = wikidataElement.getLabel();
             if (label != null)
-                wikidataElementInfos.setLabel(wikidataElement.getLabel());
+                wikidataElementInfos.setLabel(label);
 
-            // get the features from feature mapper list files
-            featuresMap = featureFileExtractor.loadFeatures();
-            featuresNoValueList = featureFileExtractor.loadFeaturesNoValue();
             // properties and values got directly from Wikidata or Nerd API (it depends on the implementation of the WikidataFetcherWrapper interface)
-            propertiesWiki = wikidataElement.getProperties();
-
-            // collect the result of properties-values fetched directly from Wikidata or Nerd KB
-            List<String> propertyValueKB = new ArrayList<>();
-            List<String> propertyNoValueKB = new ArrayList<>();
+            Map<String, List<String>> propertiesWiki = wikidataElement.getProperties();
             if (propertiesWiki != null) {
-                for (Map.Entry<String, List<String>> propertyGot : propertiesWiki.entrySet()) {
-                    String property = propertyGot.getKey();
-                    propertyNoValueKB.add(property);
-                    List<String> values = propertyGot.getValue();
-                    // if values for the property exist
-                    if (values != null) {
-                        for (String value : values) {
-                            String propertyValue = property + "_" + value;
-                            propertyValueKB.add(propertyValue);
-                        }
-                    }
-                }
-                // the index is based on the number of properties in both feature mapper file
-                Double[] featureVector = new Double[nbOfFeatures];
-
-                int idx = 0;
-
-                // put 1 if property for entities in Wikidata match with the list of 'resources/feature_mapper_no_value.csv', otherwise put 0
-                for (String propertyNoValue : featuresNoValueList) {
-                    // search the existance of a certain property in the list of property
-                    if (propertyNoValueKB.contains(propertyNoValue)) {
-                        featureVector[idx] = 1.0;
-                    } else {
-                        featureVector[idx] = 0.0;
-                    }
-                    idx++;
-                }
-
-                // put 1 if property-value for entities in Wikidata match with the list of 'resources/feature_mapper.csv', otherwise put 0
-                for (String propertyValue : featuresMap) {
-                    // search the existance of a certain property-value in the list of property-value
-                    if (propertyValueKB.contains(propertyValue)) {
-                        featureVector[idx] = 1.0;
-                    } else {
-                        featureVector[idx] = 0.0;
-                    }
-                    idx++;
-                }
-
-                // set information of feature vector
-                wikidataElementInfos.setFeatureVector(featureVector);
+                // the properties found are the features without value, the pairs property-value are the features with value
+                wikidataElementInfos.setFeatureVector(featureSchema.toFeatureVector(propertiesWiki));
             }
         }
         return wikidataElementInfos;
-    } // end of method 'getFeatureWikidata'
+    }
 
 } // end of class FeatureWikidataExtractor
@@ -0,0 +1,237 @@
+package org.nerd.kid.extractor;
+
+import org.nerd.kid.data.FeatureVector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/*
+ * immutable schema of the features described in '/resources/feature_mapper_no_value.csv' and '/resources/feature_mapper.csv'
+ * the mapper files are read once per JVM; every property and every property-value pair is mapped straight to its column index
+ * the columns follow the order of the Arff attributes: first the properties without value, then the properties with value
+ **/
+public final class FeatureSchema {
+
+    private final List<String> featuresNoValue;
+    private final List<String> features;
+
+    // property -> column index of the feature without value
+    private final Map<String, Integer> noValueIndex;
+
+    // property -> (value -> column index of the feature property_value)
+    private final Map<String, Map<String, Integer>> valueIndex;
+
+    private FeatureSchema(List<String> featuresNoValue, List<String> features) {
+        this.featuresNoValue = Collections.unmodifiableList(new ArrayList<>(featuresNoValue));
+        this.features = Collections.unmodifiableList(new ArrayList<>(features));
+
+        Map<String, Integer> noValue = new HashMap<>();
+        int idx = 0;
+        for (String property : this.featuresNoValue) {
+            noValue.putIfAbsent(property, idx);
+            idx++;
+        }
+
+        Map<String, Map<String, Integer>> value = new HashMap<>();
+        for (String propertyValue : this.features) {
+            // the features with value are written as 'property_value', e.g. P31_Q5
+            int separator = propertyValue.indexOf('_');
+            if (separator > 0) {
+                String property = propertyValue.substring(0, separator);
+                String val = propertyValue.substring(separator + 1);
+                value.computeIfAbsent(property, k -> new HashMap<>()).putIfAbsent(val, idx);
+            }
+            idx++;
+        }
+
+        this.noValueIndex = Collections.unmodifiableMap(noValue);
+        this.valueIndex = Collections.unmodifiableMap(value);
+    }
+
+    public static FeatureSchema getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // build a schema from explicit lists, e.g. for a model trained with another set of features
+    public static FeatureSchema of(List<String> featuresNoValue, List<String> features) {
+        return new FeatureSchema(featuresNoValue, features);
+    }
+
+    public int size() {
+        return featuresNoValue.size() + features.size();
+    }
+
+    public int sizeNoValue() {
+        return featuresNoValue.size();
+    }
+
+    public int sizeWithValue() {
+        return features.size();
+    }
+
+    public List<String> getFeaturesNoValue() {
+        return featuresNoValue;
+    }
+
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    // column index of a property without value, -1 if the property is not a feature
+    public int indexOf(String property) {
+        Integer idx = noValueIndex.get(property);
+        return idx == null ? -1 : idx;
+    }
+
+    // whether the property is a feature, without value or with some values
+    public boolean usesProperty(String property) {
+        return noValueIndex.containsKey(property) || valueIndex.containsKey(property);
+    }
+
+    // the properties of the features, without value and with some values
+    public Set<String> getProperties() {
+        Set<String> properties = new HashSet<>(noValueIndex.keySet());
+        properties.addAll(valueIndex.keySet());
+        return properties;
+    }
+
+    // whether some values of the property are features
+    public boolean usesValuesOf(String property) {
+        return valueIndex.containsKey(property);
+    }
+
+    // whether the pair property-value is a feature
+    public boolean usesValue(String property, String value) {
+        return indexOf(property, value) >= 0;
+    }
+
+    /* the statements which are features only: the properties of the features, with only the values which are
+    features (none for a property of a feature without value); the features of the statements pruned are the same
+    */
+    public Map<String, List<String>> prune(Map<String, List<String>> properties) {
+        Map<String, List<String>> pruned = new HashMap<>();
+        if (properties == null) {
+            return pruned;
+        }
+        for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+            if (!usesProperty(property.getKey())) {
+                continue;
+            }
+            List<String> values = new ArrayList<>();
+            Map<String, Integer> valueIdx = valueIndex.get(property.getKey());
+            if (valueIdx != null && property.getValue() != null) {
+                for (String value : property.getValue()) {
+                    if (value != null && valueIdx.containsKey(value)) {
+                        values.add(value);
+                    }
+                }
+            }
+            pruned.put(property.getKey(), values);
+        }
+        return pruned;
+    }
+
+    // checksum of the names of the features, in the order of their index
+    public long checksum() {
+        CRC32 crc = new CRC32();
+        for (String feature : featuresNoValue) {
+            crc.update(feature.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        crc.update('\n');
+        for (String feature : features) {
+            crc.update(feature.getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    // column index of a pair property-value, -1 if the pair is not a feature
+    public int indexOf(String property, String value) {
+        Map<String, Integer> values = valueIndex.get(property);
+        if (values == null) {
+            return -1;
+        }
+        Integer idx = values.get(value);
+        return idx == null ? -1 : idx;
+    }
+
+    // the features without value only, indexed from 0
+    public FeatureVector toFeatureVectorNoValue(Collection<String> propertiesNoValue) {
+        FeatureVector featureVector = new FeatureVector(sizeNoValue());
+        if (propertiesNoValue != null) {
+            for (String property : propertiesNoValue) {
+                int idx = indexOf(property);
+                if (idx >= 0) {
+                    featureVector.set(idx);
+                }
+            }
+        }
+        return featureVector;
+    }
+
+    // the features with value only, indexed from 0
+    public FeatureVector toFeatureVectorWithValue(Map<String, List<String>> properties) {
+        FeatureVector featureVector = new FeatureVector(sizeWithValue());
+        int offset = sizeNoValue();
+        if (properties != null) {
+            for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+                Map<String, Integer> values = valueIndex.get(property.getKey());
+                if (values == null || property.getValue() == null) {
+                    continue;
+                }
+                for (String value : property.getValue()) {
+                    Integer idx = values.get(value);
+                    if (idx != null) {
+                        featureVector.set(idx - offset);
+                    }
+                }
+            }
+        }
+        return featureVector;
+    }
+
+    // all the features, the properties without value being the keys of the map of properties
+    public FeatureVector toFeatureVector(Map<String, List<String>> properties) {
+        return toFeatureVector(properties == null ? null : properties.keySet(), properties);
+    }
+
+    // all the features in a single pass over the statements of an element
+    public FeatureVector toFeatureVector(Collection<String> propertiesNoValue, Map<String, List<String>> properties) {
+        FeatureVector featureVector = new FeatureVector(size());
+        if (propertiesNoValue != null) {
+            for (String property : propertiesNoValue) {
+                int idx = indexOf(property);
+                if (idx >= 0) {
+                    featureVector.set(idx);
+                }
+            }
+        }
+        if (properties != null) {
+            for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+                Map<String, Integer> values = valueIndex.get(property.getKey());
+                if (values == null || property.getValue() == null) {
+                    continue;
+                }
+                for (String value : property.getValue()) {
+                    Integer idx = values.get(value);
+                    if (idx != null) {
+                        featureVector.set(idx);
+                    }
+                }
+            }
+        }
+        return featureVector;
+    }
+
+    // lazy holder, the mapper files are read at the first use of the schema
+    private static class Holder {
+        private static final FeatureSchema INSTANCE = load();
+
+        private static FeatureSchema load() {
+            FeatureFileExtractor featureFileExtractor = new FeatureFileExtractor();
+            return new FeatureSchema(featureFileExtractor.loadFeaturesNoValue(), featureFileExtractor.loadFeatures());
+        }
+    }
+}
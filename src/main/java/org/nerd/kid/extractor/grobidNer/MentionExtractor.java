@@ -5,6 +5,7 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVRecord;
 import org.nerd.kid.arff.ArffFileBuilder;
 import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.extractor.wikidata.FetcherExecutors;
 import org.nerd.kid.service.NerdClient;
 import org.nerd.kid.service.NerdEntity;
 import org.slf4j.Logger;
@@ -22,6 +23,7 @@ import java.io.*;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class MentionExtractor {
     /* method for extracting list of mentions and their classes from Grobid-Ner project
@@ -119,9 +121,10 @@ public class MentionExtractor {
             use [ and ] for the beginning and the end of the Json file, while each result is separated by commas */
 
             bufferedWriter.write("[");
+            // short text disambiguation of all the mentions
+            List<String> results = disambiguate(nerdClient, mentionList, lang);
             for (int i = 0; i < length; i++) {
-                // short text disambiguation
-                result = nerdClient.shortTextDisambiguate(mentionList.get(i).getMention(), lang);
+                result = results.get(i);
 
                 // saving the result
                 String resultInJson = nerdClient.toJson(result);
@@ -157,9 +160,11 @@ public class MentionExtractor {
             String[] header = {"RawText,WikidataID,Class,PredictedClass,ConfidenceScore"};
             csvWriter.writeNext(header);
 
-            for (GrobidNerEntity grobidNerEntity : mentionList) {
-                // short text disambiguation
-                result = nerdClient.shortTextDisambiguate(grobidNerEntity.getMention(), lang);
+            // short text disambiguation of all the mentions
+            List<String> results = disambiguate(nerdClient, mentionList, lang);
+            for (int i = 0; i < mentionList.size(); i++) {
+                GrobidNerEntity grobidNerEntity = mentionList.get(i);
+                result = results.get(i);
 
                 // read the Json string result
                 listEntities = wikidataIdClassExtractor.parseFromJsonString(result);
@@ -181,4 +186,19 @@ public class MentionExtractor {
         }
     }
 
+    /* the disambiguations of the mentions, in their order; they are asked at the same time by the threads of the fetchers,
+    as many being sent together as entity-fishing can take (see AdaptiveConcurrencyLimiter)
+    */
+    private List<String> disambiguate(NerdClient nerdClient, List<GrobidNerEntity> mentionList, String lang) {
+        List<CompletableFuture<String>> disambiguations = new ArrayList<>(mentionList.size());
+        for (GrobidNerEntity grobidNerEntity : mentionList) {
+            disambiguations.add(CompletableFuture.supplyAsync(
+                    () -> nerdClient.shortTextDisambiguate(grobidNerEntity.getMention(), lang), FetcherExecutors.defaultExecutor()));
+        }
+        List<String> results = new ArrayList<>(mentionList.size());
+        for (CompletableFuture<String> disambiguation : disambiguations) {
+            results.add(disambiguation.join());
+        }
+        return results;
+    }
 }
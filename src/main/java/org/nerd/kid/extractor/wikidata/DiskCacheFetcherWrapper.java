@@ -0,0 +1,306 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.fusesource.lmdbjni.Constants;
+import org.fusesource.lmdbjni.Database;
+import org.fusesource.lmdbjni.DirectBuffer;
+import org.fusesource.lmdbjni.Env;
+import org.fusesource.lmdbjni.LMDBException;
+import org.fusesource.lmdbjni.Transaction;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.nerd.kid.service.NerdKidMetrics;
+import org.nerd.kid.service.NerdKidPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*
+read-through cache of the Wikidata elements on disk, kept from one run to the next (e.g. by TrainerGenerator, whose
+Ids are fetched once instead of at every run): the elements fetched by the wrapped fetcher, and the Ids it doesn't
+know, are written into an LMDB store with the time of the fetch; they are read from it until they are older than
+'maxAge', then fetched again (the old element being given if the fetch fails); the errors of the fetcher aren't cached,
+and the elements are all dropped when the features change
+
+the values of the store are the time of the fetch (8 bytes) followed by the element encoded by WikidataElementCodec,
+nothing for an unknown Id; the hits, the misses, the expired elements and the hit rate are reported by the gauges
+'org.nerd.kid.extractor.wikidata.DiskCacheFetcherWrapper.*' and logged when the cache is closed
+
+the command line tools keep it in data/cache/wikidata for 30 days, set by system properties
+(e.g. -Dnerdkid.diskCache.directory=/tmp/wikidata -Dnerdkid.diskCache.maxAgeDays=7, -Dnerdkid.diskCache.enabled=false)
+* */
+
+public class DiskCacheFetcherWrapper implements WikidataFetcherWrapper, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiskCacheFetcherWrapper.class);
+
+    public static final String DIRECTORY_PROPERTY = "nerdkid.diskCache.directory";
+    public static final String MAX_AGE_PROPERTY = "nerdkid.diskCache.maxAgeDays";
+    public static final String ENABLED_PROPERTY = "nerdkid.diskCache.enabled";
+
+    public static final String DEFAULT_DIRECTORY = NerdKidPaths.DATA + "/cache/wikidata";
+    public static final int DEFAULT_MAX_AGE_DAYS = 30;
+
+    private static final String DATABASE = "elements";
+    // the largest size of the store, the file only growing with the elements written
+    private static final long MAP_SIZE = 4L << 30;
+    private static final int TIME_SIZE = 8;
+
+    private final WikidataFetcherWrapper wrapper;
+    private final long maxAgeMillis;
+    private final Env env;
+    private final Database database;
+    // the key of every thread, in direct memory as LMDB reads it
+    private final ThreadLocal<DirectBuffer> keys = ThreadLocal.withInitial(() ->
+            new DirectBuffer(ByteBuffer.allocateDirect(LmdbFetcherWrapper.MAX_KEY_SIZE)));
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public DiskCacheFetcherWrapper(WikidataFetcherWrapper wrapper, File directory, long maxAge, TimeUnit unit) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("The directory " + directory + " can't be created.");
+        }
+        this.wrapper = wrapper;
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        this.env = new Env();
+        env.setMapSize(MAP_SIZE);
+        env.setMaxDbs(1);
+        // the transactions aren't bound to the threads, the fetches being run by pools of threads
+        env.open(directory.getPath(), Constants.NOTLS);
+        this.database = env.openDatabase(DATABASE);
+        dropIfSchemaChanged(directory);
+        registerMetrics(NerdKidMetrics.registry());
+    }
+
+    /* the fetchers keep only the statements of the features of the schema (see FeatureSchema.prune), the elements cached
+    for other features are all dropped
+    */
+    private void dropIfSchemaChanged(File directory) {
+        byte[] key = LmdbKnowledgeBaseBuilder.SCHEMA_KEY.getBytes(UTF_8);
+        byte[] checksum = ByteBuffer.allocate(8).putLong(FeatureSchema.getInstance().checksum()).array();
+        try (Transaction transaction = env.createWriteTransaction()) {
+            byte[] cachedChecksum = database.get(transaction, key);
+            if (Arrays.equals(cachedChecksum, checksum)) {
+                return;
+            }
+            if (cachedChecksum != null) {
+                LOGGER.info("The features have changed, the elements cached in " + directory + " are dropped.");
+            }
+            database.drop(transaction, false);
+            database.put(transaction, key, checksum);
+            transaction.commit();
+        }
+    }
+
+    // the wrapper cached in the directory of the system properties, or the wrapper itself if the cache is disabled
+    public static WikidataFetcherWrapper fromSystemProperties(WikidataFetcherWrapper wrapper) {
+        String enabled = System.getProperty(ENABLED_PROPERTY);
+        if (enabled != null && !Boolean.parseBoolean(enabled)) {
+            return wrapper;
+        }
+        return new DiskCacheFetcherWrapper(wrapper, new File(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)),
+                Integer.getInteger(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_DAYS), TimeUnit.DAYS);
+    }
+
+    // the gauges of the cache, the ones of the last cache created are reported
+    private void registerMetrics(MetricRegistry registry) {
+        register(registry, "hits", hits::get);
+        register(registry, "misses", misses::get);
+        register(registry, "expired", expired::get);
+        register(registry, "hit-rate", this::getHitRate);
+    }
+
+    private static void register(MetricRegistry registry, String name, Gauge<?> gauge) {
+        String metricName = MetricRegistry.name(DiskCacheFetcherWrapper.class, name);
+        registry.remove(metricName);
+        registry.register(metricName, gauge);
+    }
+
+    @Override
+    public WikidataElement getElement(String wikiId) throws Exception {
+        Cached cached = read(wikiId);
+        if (isFresh(cached)) {
+            return cached.element;
+        }
+        WikidataElement wikidataElement;
+        try {
+            wikidataElement = wrapper.getElement(wikiId);
+        } catch (Exception e) {
+            if (cached == null) {
+                throw e;
+            }
+            LOGGER.info("Some errors encountered when fetching \"" + wikiId + "\" again, the element cached is given.", e);
+            return cached.element;
+        }
+        write(Collections.singletonMap(wikiId, wikidataElement));
+        return wikidataElement;
+    }
+
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        Cached cached = read(wikiId);
+        if (isFresh(cached)) {
+            return CompletableFuture.completedFuture(cached.element);
+        }
+        return wrapper.getElementAsync(wikiId).handle((wikidataElement, e) -> {
+            if (e == null) {
+                write(Collections.singletonMap(wikiId, wikidataElement));
+                return wikidataElement;
+            }
+            if (cached == null) {
+                throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+            }
+            return cached.element;
+        });
+    }
+
+    // the Ids cached read in a single transaction, the others fetched in a single batch of the wrapper and written together
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        Map<String, WikidataElement> elements = new HashMap<>();
+        Map<String, Cached> expiredElements = new HashMap<>();
+        List<String> toFetch = new ArrayList<>();
+        try (Transaction transaction = env.createReadTransaction()) {
+            for (String wikiId : wikiIds) {
+                Cached cached = read(transaction, wikiId);
+                if (isFresh(cached)) {
+                    elements.put(wikiId, cached.element);
+                } else {
+                    if (cached != null) {
+                        expiredElements.put(wikiId, cached);
+                    }
+                    toFetch.add(wikiId);
+                }
+            }
+        }
+        if (toFetch.isEmpty()) {
+            return elements;
+        }
+        Map<String, WikidataElement> fetched = wrapper.getElements(toFetch);
+        write(fetched);
+        elements.putAll(fetched);
+        // the elements which couldn't be fetched again
+        for (Map.Entry<String, Cached> cached : expiredElements.entrySet()) {
+            if (!elements.containsKey(cached.getKey())) {
+                elements.put(cached.getKey(), cached.getValue().element);
+            }
+        }
+        return elements;
+    }
+
+    // the element cached and the time of its fetch, null if the Id isn't cached
+    private Cached read(String wikiId) {
+        try (Transaction transaction = env.createReadTransaction()) {
+            return read(transaction, wikiId);
+        }
+    }
+
+    private Cached read(Transaction transaction, String wikiId) {
+        byte[] key = wikiId.getBytes(UTF_8);
+        if (key.length == 0 || key.length > LmdbFetcherWrapper.MAX_KEY_SIZE || key[0] == '#') {
+            return null;
+        }
+        DirectBuffer keyBuffer = keys.get();
+        keyBuffer.putBytes(0, key);
+        DirectBuffer value = new DirectBuffer();
+        if (database.get(transaction, new DirectBuffer(keyBuffer.addressOffset(), key.length), value) == LMDBException.NOTFOUND || value.capacity() < TIME_SIZE) {
+            return null;
+        }
+        long fetchedAt = value.getLong(0, ByteOrder.BIG_ENDIAN);
+        WikidataElement wikidataElement = value.capacity() == TIME_SIZE ? null
+                : WikidataElementCodec.decode(wikiId, index -> value.getByte(TIME_SIZE + index), value.capacity() - TIME_SIZE);
+        return new Cached(fetchedAt, wikidataElement);
+    }
+
+    // counted as a hit, a miss or an expired element
+    private boolean isFresh(Cached cached) {
+        if (cached == null) {
+            misses.incrementAndGet();
+            return false;
+        }
+        if (System.currentTimeMillis() - cached.fetchedAt > maxAgeMillis) {
+            expired.incrementAndGet();
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    // the elements fetched (null for the unknown Ids) written in a single transaction, the errors of the store being logged
+    private void write(Map<String, WikidataElement> elements) {
+        if (elements.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (Transaction transaction = env.createWriteTransaction()) {
+            for (Map.Entry<String, WikidataElement> element : elements.entrySet()) {
+                byte[] key = element.getKey().getBytes(UTF_8);
+                if (key.length == 0 || key.length > LmdbFetcherWrapper.MAX_KEY_SIZE || key[0] == '#') {
+                    continue;
+                }
+                byte[] encoded = element.getValue() == null ? new byte[0] : WikidataElementCodec.encode(element.getValue());
+                ByteBuffer value = ByteBuffer.allocate(TIME_SIZE + encoded.length);
+                value.putLong(now).put(encoded);
+                database.put(transaction, key, value.array());
+            }
+            transaction.commit();
+        } catch (LMDBException e) {
+            LOGGER.info("Some errors encountered when writing the elements into the cache on disk.", e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    // the share of the Ids read from the disk, 0 before the first one
+    public double getHitRate() {
+        long total = hits.get() + misses.get() + expired.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.info(String.format("Cache of the Wikidata elements on disk: %d hits, %d misses, %d expired, hit rate %.1f%%.",
+                hits.get(), misses.get(), expired.get(), 100 * getHitRate()));
+        database.close();
+        env.close();
+    }
+
+    private static class Cached {
+        private final long fetchedAt;
+        private final WikidataElement element;
+
+        private Cached(long fetchedAt, WikidataElement element) {
+            this.fetchedAt = fetchedAt;
+            this.element = element;
+        }
+    }
+}
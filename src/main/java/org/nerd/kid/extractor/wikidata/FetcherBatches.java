@@ -0,0 +1,102 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.google.common.collect.Iterables;
+import org.nerd.kid.data.WikidataElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+fetches of many Wikidata Ids at once for the fetchers (WikidataFetcherWrapper.getElements), by chunks of
+'-Dnerdkid.fetcher.batchSize' Ids (50 by default, the most the Wikidata API gives in one call)
+
+the Ids unknown by the service are mapped to null, the Ids which couldn't be fetched aren't in the result:
+  - with a service taking a list of Ids, a chunk is fetched in one call; when this call fails, or doesn't give some Ids,
+    these Ids are fetched again one by one
+  - otherwise the Ids of a chunk are all fetched at the same time, asynchronously (see WikidataFetcherWrapper.getElementAsync)
+* */
+
+public final class FetcherBatches {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FetcherBatches.class);
+
+    public static final String BATCH_SIZE_PROPERTY = "nerdkid.fetcher.batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    // fetch of a chunk of Ids in one call, the unknown Ids being mapped to null
+    @FunctionalInterface
+    public interface BatchFetch {
+        Map<String, WikidataElement> fetch(List<String> wikiIds) throws Exception;
+    }
+
+    private FetcherBatches() {
+    }
+
+    public static int batchSize() {
+        return Math.max(1, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+    }
+
+    // chunks fetched in one call each, the Ids of a chunk which fails being fetched one by one by the wrapper
+    public static Map<String, WikidataElement> getElements(WikidataFetcherWrapper wrapper, Collection<String> wikiIds,
+                                                           int batchSize, BatchFetch batchFetch) {
+        Map<String, WikidataElement> elements = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(distinct(wikiIds), batchSize)) {
+            Map<String, WikidataElement> fetched;
+            try {
+                fetched = batchFetch.fetch(chunk);
+            } catch (Exception e) {
+                LOGGER.info("Some errors encountered when fetching a batch of " + chunk.size() + " Wikidata Ids, fetching them one by one", e);
+                fetched = Collections.emptyMap();
+            }
+            for (String wikiId : chunk) {
+                if (fetched.containsKey(wikiId)) {
+                    elements.put(wikiId, fetched.get(wikiId));
+                } else {
+                    fetchOne(wrapper, wikiId, elements);
+                }
+            }
+        }
+        return elements;
+    }
+
+    // chunks whose Ids are fetched one by one, all at the same time
+    public static Map<String, WikidataElement> getElementsAsync(WikidataFetcherWrapper wrapper, Collection<String> wikiIds,
+                                                                int batchSize) {
+        Map<String, WikidataElement> elements = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(distinct(wikiIds), batchSize)) {
+            Map<String, CompletableFuture<WikidataElement>> fetches = new LinkedHashMap<>();
+            for (String wikiId : chunk) {
+                fetches.put(wikiId, wrapper.getElementAsync(wikiId));
+            }
+            for (Map.Entry<String, CompletableFuture<WikidataElement>> fetch : fetches.entrySet()) {
+                try {
+                    elements.put(fetch.getKey(), fetch.getValue().join());
+                } catch (CompletionException e) {
+                    LOGGER.info("Some errors encountered when fetching the Wikidata Id \"" + fetch.getKey() + "\"", e.getCause());
+                }
+            }
+        }
+        return elements;
+    }
+
+    private static void fetchOne(WikidataFetcherWrapper wrapper, String wikiId, Map<String, WikidataElement> elements) {
+        try {
+            elements.put(wikiId, wrapper.getElement(wikiId));
+        } catch (Exception e) {
+            LOGGER.info("Some errors encountered when fetching the Wikidata Id \"" + wikiId + "\"", e);
+        }
+    }
+
+    private static List<String> distinct(Collection<String> wikiIds) {
+        return new ArrayList<>(new LinkedHashSet<>(wikiIds));
+    }
+}
@@ -0,0 +1,55 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.service.AdaptiveConcurrencyLimiter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+threads running the synchronous fetches for the asynchronous API of the fetchers (WikidataFetcherWrapper.getElementAsync):
+the callers don't wait for the remote services, the number of fetches in flight being the number of threads
+(-Dnerdkid.fetcher.threads=128, 64 by default)
+* */
+
+public final class FetcherExecutors {
+    public static final String THREADS_PROPERTY = "nerdkid.fetcher.threads";
+    // as many threads as the calls allowed at most to entity-fishing by default (see AdaptiveConcurrencyLimiter)
+    public static final int DEFAULT_THREADS = AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT;
+
+    private FetcherExecutors() {
+    }
+
+    public static ExecutorService defaultExecutor() {
+        return Holder.EXECUTOR;
+    }
+
+    // a pool of daemon threads for the fetches, named by the prefix given
+    public static ExecutorService newExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat(name + "-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    // the fetch of the wrapper run by the executor, its errors completing the future exceptionally
+    public static CompletableFuture<WikidataElement> supplyAsync(WikidataFetcherWrapper wrapper, String wikiId, Executor executor) {
+        CompletableFuture<WikidataElement> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(wrapper.getElement(wikiId));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private static class Holder {
+        private static final ExecutorService EXECUTOR = newExecutor("wikidata-fetcher",
+                Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+    }
+}
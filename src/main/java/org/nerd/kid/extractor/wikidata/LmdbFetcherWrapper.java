@@ -0,0 +1,144 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.fusesource.lmdbjni.Constants;
+import org.fusesource.lmdbjni.Database;
+import org.fusesource.lmdbjni.DirectBuffer;
+import org.fusesource.lmdbjni.Env;
+import org.fusesource.lmdbjni.LMDBException;
+import org.fusesource.lmdbjni.Transaction;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*
+fetcher of the Wikidata elements from a local knowledge base, an LMDB store built from a dump of Wikidata
+(see LmdbKnowledgeBaseBuilder): the keys are the Wikidata Ids and the values the elements encoded by WikidataElementCodec;
+the store is memory mapped, read only, and the elements are decoded directly from the mapped memory, without copy nor
+network, so that the fetches don't block (getElementAsync is completed at once)
+
+the Ids which aren't in the store are unknown (null), e.g. for the service 'lmdbDirectory: data/db/db-wikidata', or for
+the command line tools -Dnerdkid.lmdb.directory=data/db/db-wikidata
+* */
+
+public class LmdbFetcherWrapper implements WikidataFetcherWrapper, Closeable {
+
+    public static final String DIRECTORY_PROPERTY = "nerdkid.lmdb.directory";
+    public static final String DATABASE = "wikidata";
+
+    // the longest key of LMDB by default
+    static final int MAX_KEY_SIZE = 511;
+
+    private final Env env;
+    private final Database database;
+    // the key of every thread, in direct memory as LMDB reads it
+    private final ThreadLocal<DirectBuffer> keys = ThreadLocal.withInitial(() ->
+            new DirectBuffer(ByteBuffer.allocateDirect(MAX_KEY_SIZE)));
+
+    public LmdbFetcherWrapper(String directory) {
+        this(new File(directory));
+    }
+
+    public LmdbFetcherWrapper(File directory) {
+        this(directory, FeatureSchema.getInstance());
+    }
+
+    // the store must have been built for the features of the schema, or with all the item statements
+    public LmdbFetcherWrapper(File directory, FeatureSchema featureSchema) {
+        if (!new File(directory, "data.mdb").isFile()) {
+            throw new IllegalArgumentException("No LMDB knowledge base in " + directory + ".");
+        }
+        this.env = new Env();
+        env.setMaxDbs(1);
+        // read transactions aren't bound to the threads, the fetches being run by pools of threads
+        env.open(directory.getPath(), Constants.RDONLY | Constants.NOTLS);
+        try (Transaction transaction = env.createReadTransaction()) {
+            this.database = env.openDatabase(transaction, DATABASE, 0);
+            checkSchema(transaction, directory, featureSchema);
+            transaction.commit();
+        } catch (RuntimeException e) {
+            env.close();
+            throw e;
+        }
+    }
+
+    /* the builder keeps only the statements of the features of its schema (no checksum if it keeps all of them): the
+    elements of a store built for other features would lack some of the current ones, it isn't read
+    */
+    private void checkSchema(Transaction transaction, File directory, FeatureSchema featureSchema) {
+        byte[] checksum = database.get(transaction, LmdbKnowledgeBaseBuilder.SCHEMA_KEY.getBytes(UTF_8));
+        if (checksum != null && ByteBuffer.wrap(checksum).getLong() != featureSchema.checksum()) {
+            throw new IllegalArgumentException("The LMDB knowledge base in " + directory + " has been built for other features,"
+                    + " it must be built again for the current feature mappers (or with -D"
+                    + LmdbKnowledgeBaseBuilder.ALL_STATEMENTS_PROPERTY + "=true).");
+        }
+    }
+
+    // the knowledge base of -Dnerdkid.lmdb.directory, the fallback otherwise (created only if there isn't any)
+    public static WikidataFetcherWrapper fromSystemProperty(Supplier<? extends WikidataFetcherWrapper> fallback) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null ? fallback.get() : new LmdbFetcherWrapper(directory);
+    }
+
+    @Override
+    public WikidataElement getElement(String wikiId) {
+        try (Transaction transaction = env.createReadTransaction()) {
+            return get(transaction, wikiId);
+        }
+    }
+
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        CompletableFuture<WikidataElement> future = new CompletableFuture<>();
+        try {
+            future.complete(getElement(wikiId));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    // all the elements read in a single transaction
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        Map<String, WikidataElement> elements = new HashMap<>(wikiIds.size() * 4 / 3 + 1);
+        try (Transaction transaction = env.createReadTransaction()) {
+            for (String wikiId : wikiIds) {
+                elements.put(wikiId, get(transaction, wikiId));
+            }
+        }
+        return elements;
+    }
+
+    private WikidataElement get(Transaction transaction, String wikiId) {
+        byte[] id = wikiId.getBytes(UTF_8);
+        // the keys which aren't Ids (e.g. the schema) aren't elements
+        if (id.length == 0 || id.length > MAX_KEY_SIZE || id[0] == '#') {
+            return null;
+        }
+        DirectBuffer key = keys.get();
+        key.putBytes(0, id);
+        // the value is the memory mapped by LMDB, valid until the end of the transaction
+        DirectBuffer value = new DirectBuffer();
+        int rc = database.get(transaction, new DirectBuffer(key.addressOffset(), id.length), value);
+        if (rc == LMDBException.NOTFOUND) {
+            return null;
+        }
+        return WikidataElementCodec.decode(wikiId, value::getByte, value.capacity());
+    }
+
+    @Override
+    public void close() {
+        database.close();
+        env.close();
+    }
+}
@@ -0,0 +1,154 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.fusesource.lmdbjni.Database;
+import org.fusesource.lmdbjni.Env;
+import org.fusesource.lmdbjni.Transaction;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*
+class to build the local knowledge base of LmdbFetcherWrapper from a dump of Wikidata (an entity in Json by line,
+'latest-all.json[.bz2|.gz]'): the English label and the statements of every item are kept (see WikidataDumpParser),
+only the ones of the features of the schema by default, all of them with -Dnerdkid.lmdb.allStatements=true; the values
+of the statements are the items only (the other values, e.g. dates or quantities, aren't features), a property without
+item value being kept with no value; the elements are written by transactions of 10000 elements
+
+the store of a schema must be built again when the feature mappers change: LmdbFetcherWrapper refuses to read a store
+built for other features (IllegalArgumentException), a store of all the statements being read whatever the features
+
+usage: <input wikidata file (.json[.bz2|.gz])> <output directory of LMDB> [size of the store in GB, 200 by default]
+* */
+
+public class LmdbKnowledgeBaseBuilder implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LmdbKnowledgeBaseBuilder.class);
+
+    private static final int TRANSACTION_SIZE = 10000;
+    public static final long DEFAULT_MAP_SIZE_GB = 200;
+    public static final String ALL_STATEMENTS_PROPERTY = "nerdkid.lmdb.allStatements";
+    // key of the checksum of the feature schema of the statements kept, not an Id of Wikidata
+    static final String SCHEMA_KEY = "#schema";
+
+    private final Env env;
+    private final Database database;
+    private final FeatureSchema featureSchema;
+    private Transaction transaction;
+    private int pending;
+    private long count;
+
+    public LmdbKnowledgeBaseBuilder(File directory, long mapSize) {
+        this(directory, mapSize, FeatureSchema.getInstance());
+    }
+
+    /* the store can't be larger than the size given, the memory mapped being only used as the store grows;
+    only the statements of the features of the schema are kept, all the item statements if it is null
+    */
+    public LmdbKnowledgeBaseBuilder(File directory, long mapSize, FeatureSchema featureSchema) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("The directory " + directory + " can't be created.");
+        }
+        this.env = new Env();
+        env.setMapSize(mapSize);
+        env.setMaxDbs(1);
+        env.open(directory.getPath());
+        this.database = env.openDatabase(LmdbFetcherWrapper.DATABASE);
+        this.featureSchema = featureSchema;
+        this.transaction = env.createWriteTransaction();
+    }
+
+    public void add(WikidataElement element) {
+        byte[] key = element.getId().getBytes(UTF_8);
+        if (key.length > LmdbFetcherWrapper.MAX_KEY_SIZE) {
+            return;
+        }
+        database.put(transaction, key, WikidataElementCodec.encode(element));
+        count++;
+        if (++pending == TRANSACTION_SIZE) {
+            transaction.commit();
+            transaction = env.createWriteTransaction();
+            pending = 0;
+        }
+    }
+
+    // the items of the dump added, one by line; the lines which can't be read are skipped
+    public long load(InputStream dump) throws IOException {
+        long before = count;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(dump, UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || "[".equals(line) || "]".equals(line)) {
+                continue;
+            }
+            if (line.endsWith(",")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            try {
+                WikidataElement element = WikidataDumpParser.fromJson(line, featureSchema);
+                // the items only, not the properties nor the lexemes
+                if (element.getId().startsWith("Q")) {
+                    add(element);
+                    if (count % 1000000 == 0) {
+                        LOGGER.info(count + " Wikidata elements loaded.");
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.info("Some errors encountered when reading the dump of Wikidata.", e);
+            }
+        }
+        return count - before;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (featureSchema == null) {
+            database.delete(transaction, SCHEMA_KEY.getBytes(UTF_8));
+        } else {
+            database.put(transaction, SCHEMA_KEY.getBytes(UTF_8), ByteBuffer.allocate(8).putLong(featureSchema.checksum()).array());
+        }
+        transaction.commit();
+        database.close();
+        env.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: <input wikidata file (.json[.bz2|.gz])> <output directory of LMDB> [size of the store in GB, 200 by default]");
+            return;
+        }
+        long mapSizeGb = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MAP_SIZE_GB;
+        InputStream inputStream;
+        if (args[0].endsWith(".bz2")) {
+            inputStream = new BZip2CompressorInputStream(new FileInputStream(args[0]), true);
+        } else if (args[0].endsWith(".gz")) {
+            inputStream = new GZIPInputStream(new FileInputStream(args[0]), 1 << 16);
+        } else {
+            inputStream = new FileInputStream(args[0]);
+        }
+        long start = System.currentTimeMillis();
+        FeatureSchema featureSchema = Boolean.getBoolean(ALL_STATEMENTS_PROPERTY) ? null : FeatureSchema.getInstance();
+        try (LmdbKnowledgeBaseBuilder builder = new LmdbKnowledgeBaseBuilder(new File(args[1]), mapSizeGb << 30, featureSchema);
+             InputStream dump = inputStream) {
+            builder.load(dump);
+            System.out.println(builder.getCount() + " Wikidata elements written in " + args[1] + " in "
+                    + (System.currentTimeMillis() - start) / 1000 + " s.");
+        }
+    }
+}
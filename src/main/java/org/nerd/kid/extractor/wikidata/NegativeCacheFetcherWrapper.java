@@ -0,0 +1,194 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.nerd.kid.service.NerdKidMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*
+wrapper answering without any call to the wrapped fetcher for the Wikidata Ids already known to be useless:
+  - the Ids unknown by the fetcher (null element), kept for 'ttl' in a negative cache
+  - the Ids of elements without any property of the feature schema (they are predicted as OTHER), kept the same way
+    with their label only
+  - optionally, the Ids not in a Bloom filter of the valid Ids, built once by 'main' from a list of Ids
+the errors of the fetcher (e.g. RemoteServiceException) aren't cached, the Id is fetched again next time
+
+the answers without any call are counted by 'org.nerd.kid.extractor.wikidata.NegativeCacheFetcherWrapper.*'
+* */
+
+public class NegativeCacheFetcherWrapper implements WikidataFetcherWrapper {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NegativeCacheFetcherWrapper.class);
+
+    private final WikidataFetcherWrapper wrapper;
+    private final FeatureSchema featureSchema;
+    // element without feature (label only), or empty if the Id is unknown
+    private final Cache<String, Optional<WikidataElement>> negativeCache;
+    private final BloomFilter<CharSequence> validIds;
+
+    private final Counter negativeHits;
+    private final Counter bloomFilterRejections;
+
+    public NegativeCacheFetcherWrapper(WikidataFetcherWrapper wrapper, long ttl, TimeUnit unit, long maxEntries) {
+        this(wrapper, ttl, unit, maxEntries, null);
+    }
+
+    public NegativeCacheFetcherWrapper(WikidataFetcherWrapper wrapper, long ttl, TimeUnit unit, long maxEntries,
+                                       BloomFilter<CharSequence> validIds) {
+        this.wrapper = wrapper;
+        this.featureSchema = FeatureSchema.getInstance();
+        this.negativeCache = CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, unit)
+                .maximumSize(maxEntries)
+                .build();
+        this.validIds = validIds;
+        MetricRegistry registry = NerdKidMetrics.registry();
+        this.negativeHits = registry.counter(MetricRegistry.name(NegativeCacheFetcherWrapper.class, "negative-hits"));
+        this.bloomFilterRejections = registry.counter(MetricRegistry.name(NegativeCacheFetcherWrapper.class, "bloom-filter-rejections"));
+    }
+
+    @Override
+    public WikidataElement getElement(String wikiId) throws Exception {
+        Optional<WikidataElement> negative = negative(wikiId);
+        if (negative != null) {
+            return negative.orElse(null);
+        }
+        return remember(wikiId, wrapper.getElement(wikiId));
+    }
+
+    // the Ids known to be useless are answered at once, without any thread
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        Optional<WikidataElement> negative = negative(wikiId);
+        if (negative != null) {
+            return CompletableFuture.completedFuture(negative.orElse(null));
+        }
+        return wrapper.getElementAsync(wikiId).thenApply(wikidataElement -> remember(wikiId, wikidataElement));
+    }
+
+    // the Ids known to be useless are answered without fetching them, the others in a single batch of the wrapper
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        Map<String, WikidataElement> elements = new HashMap<>();
+        List<String> toFetch = new ArrayList<>();
+        for (String wikiId : wikiIds) {
+            Optional<WikidataElement> negative = negative(wikiId);
+            if (negative != null) {
+                elements.put(wikiId, negative.orElse(null));
+            } else {
+                toFetch.add(wikiId);
+            }
+        }
+        if (!toFetch.isEmpty()) {
+            for (Map.Entry<String, WikidataElement> fetched : wrapper.getElements(toFetch).entrySet()) {
+                elements.put(fetched.getKey(), remember(fetched.getKey(), fetched.getValue()));
+            }
+        }
+        return elements;
+    }
+
+    // the answer without fetching (an empty element if the Id is unknown), null if the element must be fetched
+    private Optional<WikidataElement> negative(String wikiId) {
+        if (validIds != null && !validIds.mightContain(wikiId)) {
+            bloomFilterRejections.inc();
+            return Optional.empty();
+        }
+        Optional<WikidataElement> negative = negativeCache.getIfPresent(wikiId);
+        if (negative != null) {
+            negativeHits.inc();
+            return negative.map(NegativeCacheFetcherWrapper::labelOnly);
+        }
+        return null;
+    }
+
+    private WikidataElement remember(String wikiId, WikidataElement wikidataElement) {
+        if (wikidataElement == null) {
+            negativeCache.put(wikiId, Optional.empty());
+        } else if (isFeatureless(wikidataElement)) {
+            negativeCache.put(wikiId, Optional.of(labelOnly(wikidataElement)));
+        }
+        return wikidataElement;
+    }
+
+    public long negativeCacheSize() {
+        return negativeCache.size();
+    }
+
+    public void invalidateAll() {
+        negativeCache.invalidateAll();
+    }
+
+    // no feature without value nor with value of the schema
+    private boolean isFeatureless(WikidataElement wikidataElement) {
+        Map<String, List<String>> properties = wikidataElement.getProperties();
+        return properties == null || featureSchema.toFeatureVector(properties).isEmpty();
+    }
+
+    // a new element each time, the element kept mustn't be changed by the caller
+    private static WikidataElement labelOnly(WikidataElement wikidataElement) {
+        WikidataElement copy = new WikidataElement();
+        copy.setId(wikidataElement.getId());
+        copy.setLabel(wikidataElement.getLabel());
+        copy.setProperties(new HashMap<>());
+        return copy;
+    }
+
+    // Bloom filter written by 'main'
+    public static BloomFilter<CharSequence> readBloomFilter(File file) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            BloomFilter<CharSequence> bloomFilter = BloomFilter.readFrom(inputStream, Funnels.stringFunnel(Charsets.UTF_8));
+            LOGGER.info("Bloom filter of the valid Wikidata Ids loaded from \"" + file + "\"");
+            return bloomFilter;
+        }
+    }
+
+    /* Bloom filter of the Wikidata Ids of a file, one Id by line
+    usage: <input file of Ids> <output Bloom filter> [false positive probability, 0.01 by default]
+    */
+    public static void main(String[] args) throws Exception {
+        File fileInput = new File(args[0]);
+        File fileOutput = new File(args[1]);
+        double fpp = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+
+        long nbIds;
+        try (BufferedReader reader = Files.newBufferedReader(fileInput.toPath(), UTF_8)) {
+            nbIds = reader.lines().count();
+        }
+        BloomFilter<CharSequence> bloomFilter = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), Math.max(1, nbIds), fpp);
+        try (BufferedReader reader = Files.newBufferedReader(fileInput.toPath(), UTF_8)) {
+            reader.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(bloomFilter::put);
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(fileOutput))) {
+            bloomFilter.writeTo(outputStream);
+        }
+        System.out.println("Bloom filter of " + nbIds + " Wikidata Ids saved in " + fileOutput);
+    }
+}
@@ -1,129 +1,227 @@
 package org.nerd.kid.extractor.wikidata;
 
-import org.apache.commons.io.IOUtils;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
+import org.apache.http.util.EntityUtils;
 import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
 import org.nerd.kid.exception.DataException;
 import org.nerd.kid.exception.RemoteServiceException;
-import org.nerd.kid.extractor.grobidNer.WikidataIdClassExtractor;
+import org.nerd.kid.service.AdaptiveConcurrencyLimiter;
+import org.nerd.kid.service.SharedHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+/*
+fetcher of the Wikidata elements from the knowledge base of entity-fishing ('/service/kb/concept/{id}'),
+by default from the public service of huma-num (see NerdKBLocalFetcherWrapper for a local service);
+the connections are kept alive and shared by all the fetchers (see SharedHttpClient), and the calls made at the same time
+are limited (see AdaptiveConcurrencyLimiter); the responses are parsed as they arrive, only the statements of the
+features of the schema being kept
+* */
 
 public class NerdKBFetcherWrapper implements WikidataFetcherWrapper {
     private static final Logger LOGGER = LoggerFactory.getLogger(NerdKBFetcherWrapper.class);
 
-    //String nerdPathLocal = "http://localhost:8090/service/kb/concept/";
-    //String nerdUrl = "nerd.huma-num.fr";
-    //String nerdPath = "/service/kb/concept";
-    //String nerdPath = "/test/service/kb/concept";
-    String urlNerd = "http://nerd.huma-num.fr/nerd/service/kb/concept";
+    public static final String DEFAULT_URL = "http://nerd.huma-num.fr/nerd/service/kb/concept";
 
-    @Override
-    public WikidataElement getElement(String wikiId) {
-        WikidataElement result = null;
-        try {
-            HttpClient client = HttpClientBuilder.create().build();
-//        HttpHost target = new HttpHost(nerdUrl);
-//        HttpGet request = new HttpGet(nerdPath + "/" + wikiId);
-//        HttpResponse httpResponse = httpclient.execute(target, request);
-            HttpGet request = new HttpGet(urlNerd + "/" + wikiId);
-            HttpResponse httpResponse = client.execute(request);
-            HttpEntity entity = httpResponse.getEntity();
-
-            String response = null;
-            // get the response Id for throw the exception if it's not OK == 200
-            int responseId = httpResponse.getStatusLine().getStatusCode();
-            if(responseId == 404){
-                throw new RuntimeException("Run time exception.");
-            }
-            if (responseId == 200) {
-                response = IOUtils.toString(entity.getContent(), UTF_8);
-                if (response.contains(wikiId)) {
-                    result = fromJson(response);
-                    return result;
-                }else {
-                    throw new DataException("Data parsing exception.");
-                }
-            } else {
-                throw new RemoteServiceException("Remote service exception.");
-            }
-        }catch (IOException e) {
-            LOGGER.info("Some errors encountered when loading a file.", e);
-        }catch (RemoteServiceException e) {
-            LOGGER.info("Some errors encountered from remote service.", e);
-        } catch (DataException e) {
-            LOGGER.info("Some errors encountered from data loading.", e);
-        }catch (Exception e){
-            LOGGER.info("Some errors encountered when extracting Json string.", e);
-        }
-        return result;
-    }
-
-    public WikidataElement fromJson(String inputInJson) throws Exception {
-        JSONParser parser = new JSONParser();
+    // the parsers of the responses, the structured values of the statements being read as trees
+    private static final JsonFactory JSON_FACTORY = new ObjectMapper().getFactory();
 
-        WikidataElement element = new WikidataElement();
+    private final String baseUrl;
+    private final HttpClient client;
+    // threads of the asynchronous fetches once the limiter allows them, as many as the connections of the client to the service
+    private final Executor executor;
+    // calls to the service at the same time, adapted to its latency
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final FeatureSchema featureSchema = FeatureSchema.getInstance();
 
-        JSONObject object = (JSONObject) parser.parse(inputInJson);
+    public NerdKBFetcherWrapper() {
+        this(DEFAULT_URL);
+    }
 
-        String wikidataId = (String) object.get("wikidataId");
-        String rawName = (String) object.get("rawName");
-        //String preferredName = (String) object.get("preferredName");
+    public NerdKBFetcherWrapper(String baseUrl) {
+        this(baseUrl, SharedHttpClient.get());
+    }
 
-        // replace commas in Wikidata labels with the underscore to avoid incorrect extraction in the Csv file
-        rawName = rawName.replace(",", ";");
-        rawName = rawName.replace("\"", "");
-        rawName = rawName.replace("\'", "");
+    public NerdKBFetcherWrapper(String baseUrl, HttpClient client) {
+        this(baseUrl, client, FetcherExecutors.defaultExecutor());
+    }
 
-        element.setId(wikidataId);
-        element.setLabel(rawName);
+    public NerdKBFetcherWrapper(String baseUrl, HttpClient client, Executor executor) {
+        this(baseUrl, client, executor, AdaptiveConcurrencyLimiter.shared());
+    }
 
-        JSONArray properties = (JSONArray) object.get("statements");
+    public NerdKBFetcherWrapper(String baseUrl, HttpClient client, Executor executor, AdaptiveConcurrencyLimiter limiter) {
+        this.baseUrl = baseUrl;
+        this.client = client;
+        this.executor = executor;
+        this.limiter = limiter;
+    }
 
-        Map<String, List<String>> outputProperties = element.getProperties();
+    public String getBaseUrl() {
+        return baseUrl;
+    }
 
-        if (properties != null) {
+    /* the element of the Wikidata Id, null only if it isn't known by entity-fishing (404); the other errors of the
+    service (5xx, connection) and the responses which can't be read are thrown, so that they aren't taken for an
+    unknown element (and cached as such)
+    */
+    @Override
+    public WikidataElement getElement(String wikiId) throws RemoteServiceException {
+        try {
+            return limiter.execute(() -> fetch(wikiId));
+        } catch (RemoteServiceException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteServiceException("Interrupted while waiting for the remote service for \"" + wikiId + "\".", e);
+        } catch (Exception e) {
+            throw new RemoteServiceException("Unexpected error of the remote service for \"" + wikiId + "\".", e);
+        }
+    }
 
-            for (int i = 0; i < properties.size(); i++) {
-                final JSONObject obj = (JSONObject) properties.get(i);
+    /* the fetch is queued by the limiter until it allows the call, and only then given to a thread of the executor:
+    the fetches waiting for the limit don't hold any thread
+    */
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        return limiter.executeAsync(() -> fetch(wikiId), executor);
+    }
 
-                String propertyId = (String) obj.get("propertyId");
+    // the call to the service, once the limiter allows it
+    private WikidataElement fetch(String wikiId) throws RemoteServiceException {
+        HttpGet request = new HttpGet(baseUrl + "/" + wikiId);
+        try {
+            // the response is read as it arrives, and always consumed, so that the connection goes back to the pool
+            WikidataElement element = client.execute(request, httpResponse -> {
+                HttpEntity entity = httpResponse.getEntity();
+                // get the response Id for throw the exception if it's not OK == 200
+                int responseId = httpResponse.getStatusLine().getStatusCode();
+                if (responseId == 200) {
+                    try (InputStream inputStream = entity.getContent()) {
+                        return fromJson(inputStream);
+                    } finally {
+                        EntityUtils.consumeQuietly(entity);
+                    }
+                }
+                EntityUtils.consumeQuietly(entity);
+                if (responseId == 404) {
+                    return null;
+                }
+                throw new HttpResponseException(responseId, "Remote service exception, status " + responseId + " for \"" + wikiId + "\".");
+            });
+            if (element == null) {
+                return null;
+            }
+            if (!wikiId.equals(element.getId())) {
+                throw new DataException("Data parsing exception.");
+            }
+            return element;
+        } catch (JsonProcessingException | DataException e) {
+            throw new RemoteServiceException("The response of the remote service can't be read for \"" + wikiId + "\".", e);
+        } catch (IOException e) {
+            throw new RemoteServiceException("Remote service exception for \"" + wikiId + "\".", e);
+        } catch (RuntimeException e) {
+            throw new RemoteServiceException("Unexpected error of the remote service for \"" + wikiId + "\".", e);
+        }
+    }
 
-                String value = (String) obj.get("value").toString();
+    // the element of a concept of entity-fishing, with all its statements
+    public WikidataElement fromJson(String inputInJson) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputInJson)) {
+            return fromJson(parser, null);
+        }
+    }
 
-                if (value == null) {
-                    continue;
-                }
+    /* the element of a concept of entity-fishing read as a stream, with only the statements of the features of
+    the schema (see FeatureSchema.prune): the other fields, statements and values are skipped without being built
+    */
+    public WikidataElement fromJson(InputStream inputStream) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            return fromJson(parser, featureSchema);
+        }
+    }
 
-                // check if property already exists in the map, just add the value because it's possible that a properties has several values
-                if (outputProperties.containsKey(propertyId)) {
-                    outputProperties.get(propertyId).add(value);
-                } else {
-                    List<String> values = new ArrayList<>();
-                    values.add(value);
-                    outputProperties.put(propertyId, values);
+    private static WikidataElement fromJson(JsonParser parser, FeatureSchema featureSchema) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "A concept of entity-fishing is expected.");
+        }
+        WikidataElement element = new WikidataElement();
+        Map<String, List<String>> properties = element.getProperties();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("wikidataId".equals(field) && token.isScalarValue()) {
+                element.setId(parser.getText());
+            } else if ("rawName".equals(field) && token.isScalarValue()) {
+                // replace commas in Wikidata labels with the underscore to avoid incorrect extraction in the Csv file
+                String rawName = parser.getText();
+                rawName = rawName.replace(",", ";");
+                rawName = rawName.replace("\"", "");
+                rawName = rawName.replace("\'", "");
+                element.setLabel(rawName);
+            } else if ("statements".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readStatement(parser, featureSchema, properties);
                 }
-                element.setProperties(outputProperties);
-
+            } else {
+                parser.skipChildren();
             }
-        } else {
-            element.setProperties(new HashMap<>());
         }
         return element;
     }
+
+    /* a statement added to the properties, a property can have several values; without schema every statement is kept,
+    the values which aren't a string or a number (e.g. dates) being kept in Json
+    */
+    private static void readStatement(JsonParser parser, FeatureSchema featureSchema, Map<String, List<String>> properties)
+            throws IOException {
+        String propertyId = null;
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("propertyId".equals(field) && token.isScalarValue()) {
+                propertyId = parser.getText();
+            } else if ("value".equals(field) && featureSchema == null && token != JsonToken.VALUE_NULL) {
+                value = token.isScalarValue() ? parser.getText() : parser.readValueAsTree().toString();
+            } else if ("value".equals(field) && token == JsonToken.VALUE_STRING
+                    && (propertyId == null || featureSchema.usesValuesOf(propertyId))) {
+                // the values of the features are items
+                value = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (propertyId == null) {
+            return;
+        }
+        if (featureSchema == null) {
+            if (value != null) {
+                properties.computeIfAbsent(propertyId, k -> new ArrayList<>()).add(value);
+            }
+        } else if (featureSchema.usesProperty(propertyId)) {
+            List<String> values = properties.computeIfAbsent(propertyId, k -> new ArrayList<>());
+            if (value != null && featureSchema.usesValue(propertyId, value)) {
+                values.add(value);
+            }
+        }
+    }
 }
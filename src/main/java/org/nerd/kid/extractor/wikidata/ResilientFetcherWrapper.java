@@ -0,0 +1,253 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+import org.nerd.kid.service.CircuitBreaker;
+import org.nerd.kid.service.NerdKidMetrics;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+wrapper protecting the callers from a remote service which fails or is slow:
+  - the errors of the service (RemoteServiceException, IOException) are retried 'maxRetries' times, after a random
+    backoff growing exponentially up to 'maxBackoff'; the unknown Ids (null) aren't errors
+  - optionally, a fetch still running after the 95th percentile of the latency of the service (at least 'minHedgeDelay',
+    once 100 latencies are known) is also asked to a replica of the service, the first element given being used
+  - a circuit breaker (see CircuitBreaker) stops calling the service after too many failures in a row; the elements
+    fetched before are then given if they are known (stale), otherwise the fetch fails at once; the stale elements
+    are also given when a fetch fails
+  - optionally, a fetch fails after 'timeout'
+
+the metrics of every service are 'org.nerd.kid.extractor.wikidata.ResilientFetcherWrapper.<name>.*': latency, retries,
+hedges, hedge-wins, failures, short-circuits, stale, circuit-state
+* */
+
+public class ResilientFetcherWrapper implements WikidataFetcherWrapper {
+    // latencies measured before the 95th percentile is used for hedging
+    private static final int MIN_LATENCY_SAMPLES = 100;
+
+    private final String name;
+    private final WikidataFetcherWrapper wrapper;
+    private final ScheduledExecutorService scheduler;
+
+    private int maxRetries = 2;
+    private long backoffNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(1);
+    private WikidataFetcherWrapper replica;
+    private long minHedgeDelayNanos;
+    private long timeoutNanos;
+    private CircuitBreaker circuitBreaker = new CircuitBreaker(20, 30, TimeUnit.SECONDS);
+    private Cache<String, WikidataElement> staleElements = CacheBuilder.newBuilder().maximumSize(10000).build();
+
+    private final Timer latency;
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+    private final Counter failures;
+    private final Counter shortCircuits;
+    private final Counter stale;
+
+    // the name of the service is the one of its metrics; the scheduler runs the retries, the hedges and the timeouts
+    public ResilientFetcherWrapper(String name, WikidataFetcherWrapper wrapper, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.wrapper = wrapper;
+        this.scheduler = scheduler;
+        MetricRegistry registry = NerdKidMetrics.registry();
+        this.latency = registry.timer(metricName("latency"));
+        this.retries = registry.counter(metricName("retries"));
+        this.hedges = registry.counter(metricName("hedges"));
+        this.hedgeWins = registry.counter(metricName("hedge-wins"));
+        this.failures = registry.counter(metricName("failures"));
+        this.shortCircuits = registry.counter(metricName("short-circuits"));
+        this.stale = registry.counter(metricName("stale"));
+        registry.remove(metricName("circuit-state"));
+        registry.register(metricName("circuit-state"), (Gauge<String>) () -> circuitBreaker.getState().name());
+    }
+
+    public ResilientFetcherWrapper retries(int maxRetries, long backoff, long maxBackoff, TimeUnit unit) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffNanos = unit.toNanos(backoff);
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+        return this;
+    }
+
+    public ResilientFetcherWrapper hedge(WikidataFetcherWrapper replica, long minHedgeDelay, TimeUnit unit) {
+        this.replica = replica;
+        this.minHedgeDelayNanos = unit.toNanos(minHedgeDelay);
+        return this;
+    }
+
+    public ResilientFetcherWrapper circuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public ResilientFetcherWrapper staleEntries(long maxEntries) {
+        this.staleElements = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+        return this;
+    }
+
+    public ResilientFetcherWrapper timeout(long timeout, TimeUnit unit) {
+        this.timeoutNanos = unit.toNanos(timeout);
+        return this;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public WikidataElement getElement(String wikiId) throws Exception {
+        try {
+            return getElementAsync(wikiId).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        if (!circuitBreaker.allowRequest()) {
+            shortCircuits.inc();
+            return staleOrFailure(wikiId, new RemoteServiceException("The service " + name + " is unavailable (circuit open), \"" + wikiId + "\" isn't fetched."));
+        }
+        Fetch fetch = new Fetch(wikiId);
+        fetch.attempt(0);
+        // the hedge and the timeout aren't needed any more once the fetch is over
+        if (replica != null && latency.getCount() >= MIN_LATENCY_SAMPLES) {
+            ScheduledFuture<?> hedge = scheduler.schedule(fetch::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            fetch.result.whenComplete((wikidataElement, e) -> hedge.cancel(false));
+        }
+        if (timeoutNanos > 0) {
+            ScheduledFuture<?> timeout = scheduler.schedule(() -> fetch.result.completeExceptionally(
+                    new RemoteServiceException("Timeout of the service " + name + " for \"" + wikiId + "\".")), timeoutNanos, TimeUnit.NANOSECONDS);
+            fetch.result.whenComplete((wikidataElement, e) -> timeout.cancel(false));
+        }
+        return fetch.result.handle((wikidataElement, e) -> {
+            latency.update(System.nanoTime() - fetch.start, TimeUnit.NANOSECONDS);
+            if (e == null) {
+                circuitBreaker.onSuccess();
+                if (wikidataElement != null) {
+                    staleElements.put(wikiId, wikidataElement);
+                }
+                return CompletableFuture.completedFuture(wikidataElement);
+            }
+            failures.inc();
+            circuitBreaker.onFailure();
+            return staleOrFailure(wikiId, e instanceof CompletionException ? e.getCause() : e);
+        }).thenCompose(result -> result);
+    }
+
+    /* the Ids of a batch fetched one by one, all at the same time (see FetcherBatches.getElementsAsync), so that the
+    retries, the hedges, the timeout, the circuit breaker and the stale elements apply to each of them; the Ids which
+    couldn't be fetched aren't in the result
+    */
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        return FetcherBatches.getElementsAsync(this, wikiIds, FetcherBatches.batchSize());
+    }
+
+    private CompletableFuture<WikidataElement> staleOrFailure(String wikiId, Throwable e) {
+        WikidataElement staleElement = staleElements.getIfPresent(wikiId);
+        if (staleElement != null) {
+            stale.inc();
+            return CompletableFuture.completedFuture(staleElement);
+        }
+        CompletableFuture<WikidataElement> failure = new CompletableFuture<>();
+        failure.completeExceptionally(e);
+        return failure;
+    }
+
+    // the 95th percentile of the latency
+    private long hedgeDelayNanos() {
+        return Math.max(minHedgeDelayNanos, (long) latency.getSnapshot().get95thPercentile());
+    }
+
+    // full jitter: a random backoff up to the exponential one
+    private long backoffNanos(int attempt) {
+        long exponential = backoffNanos << Math.min(attempt, 20);
+        long bound = Math.min(maxBackoffNanos, exponential);
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound) : 0;
+    }
+
+    private static boolean isRetryable(Throwable e) {
+        return e instanceof RemoteServiceException || e instanceof IOException;
+    }
+
+    private String metricName(String metric) {
+        return MetricRegistry.name(ResilientFetcherWrapper.class, name, metric);
+    }
+
+    // a fetch of the service and of its replica, the first element given completing the result
+    private class Fetch {
+        private final String wikiId;
+        private final long start = System.nanoTime();
+        private final CompletableFuture<WikidataElement> result = new CompletableFuture<>();
+        // the service and the replica, while they are still fetching
+        private final AtomicInteger fetching = new AtomicInteger(1);
+
+        private Fetch(String wikiId) {
+            this.wikiId = wikiId;
+        }
+
+        private void attempt(int attempt) {
+            if (result.isDone()) {
+                return;
+            }
+            wrapper.getElementAsync(wikiId).whenComplete((wikidataElement, e) -> {
+                if (e == null) {
+                    result.complete(wikidataElement);
+                    return;
+                }
+                Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                if (attempt < maxRetries && isRetryable(cause) && !result.isDone()) {
+                    retries.inc();
+                    scheduler.schedule(() -> attempt(attempt + 1), backoffNanos(attempt), TimeUnit.NANOSECONDS);
+                } else {
+                    failed(cause);
+                }
+            });
+        }
+
+        private void hedge() {
+            if (result.isDone()) {
+                return;
+            }
+            hedges.inc();
+            fetching.incrementAndGet();
+            replica.getElementAsync(wikiId).whenComplete((wikidataElement, e) -> {
+                if (e != null) {
+                    failed(e instanceof CompletionException ? e.getCause() : e);
+                } else if (result.complete(wikidataElement)) {
+                    hedgeWins.inc();
+                }
+            });
+        }
+
+        // the fetch fails once the service and the replica have both failed
+        private void failed(Throwable e) {
+            if (fetching.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
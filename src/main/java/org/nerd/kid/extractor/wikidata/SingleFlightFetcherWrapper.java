@@ -0,0 +1,46 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.codahale.metrics.MetricRegistry;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.service.SingleFlight;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/*
+wrapper fetching only once a Wikidata Id asked by several callers at the same time (e.g. a trending entity while
+the predictions aren't cached yet): the callers share the fetch in flight, and the element fetched, which mustn't be changed
+
+the callers sharing a fetch are counted by 'org.nerd.kid.extractor.wikidata.SingleFlightFetcherWrapper.coalesced'
+* */
+
+public class SingleFlightFetcherWrapper implements WikidataFetcherWrapper {
+    private final WikidataFetcherWrapper wrapper;
+    private final SingleFlight<String, WikidataElement> fetches;
+
+    public SingleFlightFetcherWrapper(WikidataFetcherWrapper wrapper) {
+        this.wrapper = wrapper;
+        this.fetches = new SingleFlight<>(MetricRegistry.name(SingleFlightFetcherWrapper.class, "coalesced"));
+    }
+
+    @Override
+    public WikidataElement getElement(String wikiId) throws Exception {
+        return fetches.call(wikiId, () -> wrapper.getElement(wikiId));
+    }
+
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        return fetches.execute(wikiId, () -> wrapper.getElementAsync(wikiId));
+    }
+
+    // a batch is a single fetch of the wrapper
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        return wrapper.getElements(wikiIds);
+    }
+
+    public long coalesced() {
+        return fetches.coalesced();
+    }
+}
@@ -1,94 +1,182 @@
 package org.nerd.kid.extractor.wikidata;
 
 import org.nerd.kid.data.WikidataElement;
-import org.nerd.kid.extractor.FeatureFileExtractor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.nerd.kid.exception.RemoteServiceException;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.*;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
 import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/*
+fetcher of the Wikidata elements from the Wikibase API (wbgetentities) with the Wikidata Toolkit: the Ids are fetched by
+chunks (see FetcherBatches), the toolkit sending a chunk in a single request; its data filters ask for the terms in English
+and the claims only, without the sitelinks nor the terms of the other languages
+
+the API gives all the claims of an entity, the claims of the properties which aren't features are dropped here, as well
+as the values which aren't features (see FeatureSchema.prune); e.g. for a local stand-in of the API,
+new WikibaseWrapper("http://localhost:8080/w/api.php")
+
+the asynchronous fetches are queued and sent by the threads of the fetchers (see FetcherExecutors): a thread takes all
+the Ids queued, up to a chunk, in a single request, so that the Ids asked while the threads are busy are fetched together
+* */
 
 public class WikibaseWrapper implements WikidataFetcherWrapper {
-    private static final Logger LOGGER = LoggerFactory.getLogger(WikibaseWrapper.class);
+    private final WikibaseDataFetcher wikibaseDataFetcher;
 
-    private WikibaseDataFetcher wikibaseDataFetcher;
+    private final FeatureSchema featureSchema;
 
-    private FeatureFileExtractor featureFileExtractor;
+    private final Executor executor;
+    // the asynchronous fetches waiting for a thread
+    private final Queue<PendingElement> pending = new ConcurrentLinkedQueue<>();
 
-    public WikibaseWrapper(){
-        wikibaseDataFetcher = WikibaseDataFetcher.getWikidataDataFetcher();
-        featureFileExtractor = new FeatureFileExtractor();
+    public WikibaseWrapper() {
+        this(WikibaseDataFetcher.getWikidataDataFetcher(), FeatureSchema.getInstance());
     }
 
-    public WikidataElement getElement(String wikiId) throws Exception {
-        String labelItem = null;
+    public WikibaseWrapper(String apiUrl) {
+        this(new WikibaseDataFetcher(new ApiConnection(apiUrl), Datamodel.SITE_WIKIDATA), FeatureSchema.getInstance());
+    }
 
-        System.out.println("Fetch data from Wikidata API..." + wikiId);
+    public WikibaseWrapper(WikibaseDataFetcher wikibaseDataFetcher, FeatureSchema featureSchema) {
+        this(wikibaseDataFetcher, featureSchema, FetcherExecutors.defaultExecutor());
+    }
 
-        WikidataElement wikidataElement = new WikidataElement();
+    public WikibaseWrapper(WikibaseDataFetcher wikibaseDataFetcher, FeatureSchema featureSchema, Executor executor) {
+        this.wikibaseDataFetcher = wikibaseDataFetcher;
+        this.featureSchema = featureSchema;
+        this.executor = executor;
+
+        DocumentDataFilter filter = wikibaseDataFetcher.getFilter();
+        filter.setLanguageFilter(Collections.singleton("en"));
+        filter.setSiteLinkFilter(Collections.<String>emptySet());
+        // an empty filter of properties would leave out all the claims
+        Set<PropertyIdValue> properties = new HashSet<>();
+        for (String property : featureSchema.getProperties()) {
+            properties.add(Datamodel.makeWikidataPropertyIdValue(property));
+        }
+        filter.setPropertyFilter(properties);
+    }
 
-        wikibaseDataFetcher.getEntityDocument(wikiId);
+    // a single request, null if the Id is unknown
+    @Override
+    public WikidataElement getElement(String wikiId) throws Exception {
+        return getElementBatch(Collections.singletonList(wikiId)).get(wikiId);
+    }
+
+    // queued until a thread of the fetchers sends it, with the other Ids queued meanwhile
+    @Override
+    public CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        CompletableFuture<WikidataElement> future = new CompletableFuture<>();
+        pending.add(new PendingElement(wikiId, future));
+        executor.execute(this::fetchPending);
+        return future;
+    }
+
+    // a single request for the Ids queued, up to a chunk; nothing if the other threads have already taken them
+    private void fetchPending() {
+        int batchSize = FetcherBatches.batchSize();
+        List<PendingElement> batch = new ArrayList<>();
+        Set<String> wikiIds = new LinkedHashSet<>();
+        PendingElement pendingElement;
+        while (wikiIds.size() < batchSize && (pendingElement = pending.poll()) != null) {
+            batch.add(pendingElement);
+            wikiIds.add(pendingElement.wikiId);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, WikidataElement> elements = getElementBatch(new ArrayList<>(wikiIds));
+            for (PendingElement element : batch) {
+                element.future.complete(elements.get(element.wikiId));
+            }
+        } catch (Throwable e) {
+            for (PendingElement element : batch) {
+                element.future.completeExceptionally(e);
+            }
+        }
+    }
 
-        ItemDocument document = (ItemDocument) wikibaseDataFetcher.getEntityDocument(wikiId);
+    // the documents of a chunk of Ids are fetched in a single call of the Wikidata API (see FetcherBatches)
+    @Override
+    public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        return FetcherBatches.getElements(this, wikiIds, FetcherBatches.batchSize(), this::getElementBatch);
+    }
 
-        if (document != null) {
+    private Map<String, WikidataElement> getElementBatch(List<String> wikiIds) throws Exception {
+        Map<String, EntityDocument> documents = wikibaseDataFetcher.getEntityDocuments(wikiIds);
+        if (documents == null) {
+            throw new RemoteServiceException("Remote service exception for a batch of " + wikiIds.size() + " Wikidata Ids.");
+        }
+        Map<String, WikidataElement> elements = new HashMap<>();
+        for (String wikiId : wikiIds) {
+            EntityDocument document = documents.get(wikiId);
+            // the missing entities and the entities which aren't items are unknown
+            elements.put(wikiId, document instanceof ItemDocument ? toElement(wikiId, (ItemDocument) document) : null);
+        }
+        return elements;
+    }
 
-            // get the label of wikidata Id
-            labelItem = document.getLabels().get("en").getText();
+    private WikidataElement toElement(String wikiId, ItemDocument document) {
+        WikidataElement wikidataElement = new WikidataElement();
+        wikidataElement.setId(wikiId);
 
+        // get the label of wikidata Id, null without English label
+        MonolingualTextValue label = document.getLabels().get("en");
+        if (label != null) {
             // replace commas in Wikidata labels with the underscore to avoid incorrect extraction in the Csv file
-            if(labelItem.contains(",")){
-                labelItem = labelItem.replace(",", "_");
-            }
+            wikidataElement.setLabel(label.getText().replace(",", "_"));
+        }
 
-            if (labelItem.equals(null)) {
-                labelItem = "Null";
-
-                // list for storing properties and its values
-                //Map<String, List<String>> dataPropertyValue = featureFileExtractor.loadFeatures();
-                Map<String, List<String>> dataPropertyValue = new HashMap<>();
-                for (StatementGroup statementGroup : document.getStatementGroups()) {
-
-                    // get the properties
-                    String property = statementGroup.getProperty().getId().toString().trim();
-
-                    // get the values
-                    for (Statement statement : statementGroup) {
-                        if (statement.getClaim().getMainSnak() instanceof ValueSnak) {
-                            Value value = (statement.getClaim().getMainSnak()).getValue();
-                            if (value instanceof ItemIdValue) {
-
-                                // so we have property:property; value:valueofProperty
-                                String valueOfProperty = ((ItemIdValue) value).getId().toString().trim();
-
-                                //if the property has not been added in the map, create a new property-values
-                                if (dataPropertyValue.get(property) == null) {
-                                    List<String> values = new ArrayList<>();
-                                    values.add(valueOfProperty);
-                                    dataPropertyValue.put(property, values);
-                                } else {
-                                    //if the property exists in the map,just add the values with the same property
-                                    dataPropertyValue.get(property).add(valueOfProperty);
-                                }
-                            }
+        // the item values of the statements, only the ones of the features being kept
+        Map<String, List<String>> dataPropertyValue = new HashMap<>();
+        for (StatementGroup statementGroup : document.getStatementGroups()) {
+            String property = statementGroup.getProperty().getId().trim();
+            if (!featureSchema.usesProperty(property)) {
+                continue;
+            }
+            List<String> values = new ArrayList<>();
+            for (Statement statement : statementGroup) {
+                if (statement.getClaim().getMainSnak() instanceof ValueSnak) {
+                    Value value = ((ValueSnak) statement.getClaim().getMainSnak()).getValue();
+                    if (value instanceof ItemIdValue) {
+                        String valueOfProperty = ((ItemIdValue) value).getId().trim();
+                        if (featureSchema.usesValue(property, valueOfProperty)) {
+                            values.add(valueOfProperty);
                         }
                     }
                 }
-
-                wikidataElement.setId(wikiId);
-                wikidataElement.setLabel(labelItem);
-                wikidataElement.setProperties(dataPropertyValue);
-
             }
-        } else {
-            System.out.println("Data couldn't be fetched.");
+            dataPropertyValue.put(property, values);
         }
+        wikidataElement.setProperties(dataPropertyValue);
+        wikidataElement.setPropertiesNoValue(new ArrayList<>(dataPropertyValue.keySet()));
 
         return wikidataElement;
-    } // end of method
-} // end of class
+    }
 
+    private static class PendingElement {
+        private final String wikiId;
+        private final CompletableFuture<WikidataElement> future;
+
+        PendingElement(String wikiId, CompletableFuture<WikidataElement> future) {
+            this.wikiId = wikiId;
+            this.future = future;
+        }
+    }
+} // end of class
@@ -0,0 +1,157 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+parser of the entities of a dump of Wikidata (an entity in Json by line, see LmdbKnowledgeBaseBuilder and
+WikidataJsonProcessor), read as a stream: the Id, the English label and the item values of the statements are kept;
+with a feature schema, only the statements of its properties and the values of its features are kept, the rest of the
+entity (other languages, sitelinks, qualifiers, references, other statements) being skipped without being built
+* */
+
+public final class WikidataDumpParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private WikidataDumpParser() {
+    }
+
+    // the element of an entity, all its item statements being kept if the schema is null
+    public static WikidataElement fromJson(String entity, FeatureSchema featureSchema) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(entity)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "An entity of Wikidata is expected.");
+            }
+            WikidataElement element = new WikidataElement();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("id".equals(field) && token.isScalarValue()) {
+                    element.setId(parser.getText());
+                } else if ("labels".equals(field) && token == JsonToken.START_OBJECT) {
+                    readLabel(parser, element);
+                } else if ("claims".equals(field) && token == JsonToken.START_OBJECT) {
+                    readClaims(parser, featureSchema, element.getProperties());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (element.getId() == null) {
+                throw new JsonParseException(parser, "An entity of Wikidata without Id.");
+            }
+            return element;
+        }
+    }
+
+    private static void readLabel(JsonParser parser, WikidataElement element) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String language = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!"en".equals(language) || token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken().isScalarValue() && "value".equals(field)) {
+                    // replace commas in Wikidata labels to avoid incorrect extraction in the Csv file
+                    element.setLabel(parser.getText().replace(",", ";").replace("\"", "").replace("\'", ""));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readClaims(JsonParser parser, FeatureSchema featureSchema, Map<String, List<String>> properties)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String property = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY || (featureSchema != null && !featureSchema.usesProperty(property))) {
+                parser.skipChildren();
+                continue;
+            }
+            // the values of the properties of the features without value aren't needed
+            boolean keepValues = featureSchema == null || featureSchema.usesValuesOf(property);
+            List<String> values = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (!keepValues) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String value = readStatement(parser);
+                if (value != null && (featureSchema == null || featureSchema.usesValue(property, value))) {
+                    values.add(value);
+                }
+            }
+            properties.put(property, values);
+        }
+    }
+
+    // the item of the main snak of a statement, null if its value isn't an item
+    private static String readStatement(JsonParser parser) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("mainsnak".equals(field) && token == JsonToken.START_OBJECT) {
+                value = readObject(parser, "datavalue", WikidataDumpParser::readDataValue);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private static String readDataValue(JsonParser parser) throws IOException {
+        return readObject(parser, "value", WikidataDumpParser::readEntityId);
+    }
+
+    // the Id of an item value ('entity-type' item), null for the other entities
+    private static String readEntityId(JsonParser parser) throws IOException {
+        String entityType = null;
+        String id = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("entity-type".equals(field) && token.isScalarValue()) {
+                entityType = parser.getText();
+            } else if ("id".equals(field) && token.isScalarValue()) {
+                id = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return "item".equals(entityType) ? id : null;
+    }
+
+    // the value read by the reader from the object of the field, the other fields being skipped
+    private static String readObject(JsonParser parser, String fieldName, ObjectReader reader) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (fieldName.equals(field) && token == JsonToken.START_OBJECT) {
+                value = reader.read(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface ObjectReader {
+        String read(JsonParser parser) throws IOException;
+    }
+}
@@ -0,0 +1,213 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.NerdKidException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/*
+compact binary encoding of a Wikidata element (without its Id, which is the key of the element), used by the local
+knowledge base (see LmdbFetcherWrapper):
+  - a byte of version
+  - the label, its length + 1 (0 for no label) then its bytes in UTF-8
+  - the number of properties, then for every property its Id and the number of its values followed by the values
+  - the number of properties without value, then their Ids
+the numbers are varints (7 bits by byte); the Ids and the values are a varint 'n << 2 | kind' where kind 0 is the item
+'Q<n>', 1 the property 'P<n>', 2 a string of n bytes in UTF-8 which follow and 3 no value (null), so that 'P31' -> 'Q5'
+takes 3 bytes
+
+the elements are decoded from any bytes (see Bytes), e.g. the memory mapped by LMDB, without copying them first
+* */
+
+public final class WikidataElementCodec {
+    public static final byte VERSION = 1;
+
+    private static final int ITEM = 0;
+    private static final int PROPERTY = 1;
+    private static final int STRING = 2;
+    private static final int NULL = 3;
+
+    private WikidataElementCodec() {
+    }
+
+    // bytes read one by one from their index
+    @FunctionalInterface
+    public interface Bytes {
+        byte get(int index);
+    }
+
+    public static byte[] encode(WikidataElement element) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64);
+        output.write(VERSION);
+        if (element.getLabel() == null) {
+            writeVarint(output, 0);
+        } else {
+            byte[] label = element.getLabel().getBytes(UTF_8);
+            writeVarint(output, label.length + 1L);
+            output.write(label, 0, label.length);
+        }
+        Map<String, List<String>> properties = element.getProperties() != null ? element.getProperties() : new HashMap<>();
+        writeVarint(output, properties.size());
+        for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+            writeToken(output, property.getKey());
+            List<String> values = property.getValue() != null ? property.getValue() : new ArrayList<>();
+            writeVarint(output, values.size());
+            for (String value : values) {
+                writeToken(output, value);
+            }
+        }
+        List<String> propertiesNoValue = element.getPropertiesNoValue() != null ? element.getPropertiesNoValue() : new ArrayList<>();
+        writeVarint(output, propertiesNoValue.size());
+        for (String property : propertiesNoValue) {
+            writeToken(output, property);
+        }
+        return output.toByteArray();
+    }
+
+    public static WikidataElement decode(String wikiId, byte[] bytes) {
+        return decode(wikiId, index -> bytes[index], bytes.length);
+    }
+
+    // the element of the 'length' bytes given, a NerdKidException being thrown if they aren't an element
+    public static WikidataElement decode(String wikiId, Bytes bytes, int length) {
+        Reader reader = new Reader(bytes, length);
+        byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new NerdKidException("Unknown version " + version + " of the encoding of \"" + wikiId + "\".");
+        }
+        WikidataElement element = new WikidataElement();
+        element.setId(wikiId);
+        int labelLength = reader.readLength();
+        element.setLabel(labelLength == 0 ? null : reader.readString(labelLength - 1));
+
+        int nbProperties = reader.readLength();
+        Map<String, List<String>> properties = new HashMap<>(nbProperties * 4 / 3 + 1);
+        for (int i = 0; i < nbProperties; i++) {
+            String property = reader.readToken();
+            int nbValues = reader.readLength();
+            List<String> values = new ArrayList<>(nbValues);
+            for (int j = 0; j < nbValues; j++) {
+                values.add(reader.readToken());
+            }
+            properties.put(property, values);
+        }
+        element.setProperties(properties);
+
+        int nbPropertiesNoValue = reader.readLength();
+        List<String> propertiesNoValue = new ArrayList<>(nbPropertiesNoValue);
+        for (int i = 0; i < nbPropertiesNoValue; i++) {
+            propertiesNoValue.add(reader.readToken());
+        }
+        element.setPropertiesNoValue(propertiesNoValue);
+        return element;
+    }
+
+    private static void writeToken(ByteArrayOutputStream output, String token) {
+        if (token == null) {
+            writeVarint(output, NULL);
+            return;
+        }
+        long number = idNumber(token);
+        if (number > 0) {
+            writeVarint(output, number << 2 | (token.charAt(0) == 'Q' ? ITEM : PROPERTY));
+        } else {
+            byte[] bytes = token.getBytes(UTF_8);
+            writeVarint(output, (long) bytes.length << 2 | STRING);
+            output.write(bytes, 0, bytes.length);
+        }
+    }
+
+    // the number of the Ids 'Q<n>' and 'P<n>' written back identically (no leading zero), 0 otherwise
+    private static long idNumber(String token) {
+        int length = token.length();
+        if (length < 2 || length > 17 || (token.charAt(0) != 'Q' && token.charAt(0) != 'P') || token.charAt(1) == '0') {
+            return 0;
+        }
+        long number = 0;
+        for (int i = 1; i < length; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static class Reader {
+        private final Bytes bytes;
+        private final int length;
+        private int position;
+
+        private Reader(Bytes bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+        }
+
+        private byte readByte() {
+            if (position >= length) {
+                throw new NerdKidException("Truncated encoding of a Wikidata element.");
+            }
+            return bytes.get(position++);
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new NerdKidException("Malformed encoding of a Wikidata element.");
+        }
+
+        private int readLength() {
+            long value = readVarint();
+            if (value > length) {
+                throw new NerdKidException("Malformed encoding of a Wikidata element.");
+            }
+            return (int) value;
+        }
+
+        private String readToken() {
+            long token = readVarint();
+            switch ((int) (token & 3)) {
+                case ITEM:
+                    return "Q" + (token >>> 2);
+                case PROPERTY:
+                    return "P" + (token >>> 2);
+                case STRING:
+                    if (token >>> 2 > length) {
+                        throw new NerdKidException("Malformed encoding of a Wikidata element.");
+                    }
+                    return readString((int) (token >>> 2));
+                default:
+                    return null;
+            }
+        }
+
+        private String readString(int size) {
+            byte[] string = new byte[size];
+            for (int i = 0; i < size; i++) {
+                string[i] = readByte();
+            }
+            return new String(string, UTF_8);
+        }
+    }
+}
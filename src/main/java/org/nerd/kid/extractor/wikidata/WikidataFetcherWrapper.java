@@ -2,7 +2,25 @@ package org.nerd.kid.extractor.wikidata;
 
 import org.nerd.kid.data.WikidataElement;
 
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 public interface WikidataFetcherWrapper {
     WikidataElement getElement(String wikiId) throws Exception;
 
+    /* the element of the Wikidata Id without blocking the caller, the errors of the fetch completing the future exceptionally;
+    by default the synchronous fetch run by the threads of the fetchers (see FetcherExecutors)
+    */
+    default CompletableFuture<WikidataElement> getElementAsync(String wikiId) {
+        return FetcherExecutors.supplyAsync(this, wikiId, FetcherExecutors.defaultExecutor());
+    }
+
+    /* the elements of many Wikidata Ids by Id, the Ids unknown by the service being mapped to null and the Ids which
+    couldn't be fetched being left out; by default fetched one by one, a chunk at a time (see FetcherBatches)
+    */
+    default Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+        return FetcherBatches.getElementsAsync(this, wikiIds, FetcherBatches.batchSize());
+    }
+
 }
@@ -0,0 +1,233 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.extractor.FeatureSchema;
+import smile.classification.RandomForest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+compact binary format of a model, the flat forest being stored as it is evaluated so that nothing has to be rebuilt at loading
+
+all the numbers are big-endian:
+  int     magic "NKID"
+  int     version of the format
+  int     number of features, number of classes, number of trees, number of nodes
+  long    checksum (CRC32) of the feature schema the model has been trained with
+  strings features without value, features with value (P_V), classes: int count, then int length + UTF-8 bytes for each
+  padding to a multiple of 8 bytes
+  double  out-of-bag accuracy of every tree
+  int     root of every tree, then the nodes (3 ints by node, see FlatForest)
+  long    checksum (CRC32) of all the bytes before
+* */
+
+public final class BinaryModel {
+    public static final int MAGIC = 0x4E4B4944;
+    public static final int VERSION = 1;
+
+    private final FeatureSchema featureSchema;
+    private final List<String> classes;
+    private final FlatForest forest;
+    private final double[] treeWeights;
+
+    public BinaryModel(FeatureSchema featureSchema, List<String> classes, FlatForest forest, double[] treeWeights) {
+        if (forest.numberOfFeatures() != featureSchema.size()) {
+            throw new NerdKidException("The model has " + forest.numberOfFeatures() + " features, the schema " + featureSchema.size());
+        }
+        if (forest.numberOfClasses() > classes.size()) {
+            throw new NerdKidException("The model has " + forest.numberOfClasses() + " classes, but " + classes.size() + " names of class");
+        }
+        if (treeWeights.length != forest.size()) {
+            throw new NerdKidException("The model has " + forest.size() + " trees, but " + treeWeights.length + " accuracies");
+        }
+        this.featureSchema = featureSchema;
+        this.classes = Collections.unmodifiableList(new ArrayList<>(classes));
+        this.forest = forest;
+        this.treeWeights = treeWeights;
+    }
+
+    // conversion of a model of Smile, trained with the features of the schema and the classes given
+    public static BinaryModel fromForest(RandomForest randomForest, FeatureSchema featureSchema, List<String> classes) {
+        return new BinaryModel(featureSchema, classes, ForestCompiler.compile(randomForest), ForestCompiler.treeWeights(randomForest));
+    }
+
+    public FeatureSchema getFeatureSchema() {
+        return featureSchema;
+    }
+
+    public List<String> getClasses() {
+        return classes;
+    }
+
+    public FlatForest getForest() {
+        return forest;
+    }
+
+    public double[] getTreeWeights() {
+        return treeWeights;
+    }
+
+    // checksum of the names of the features, in the order of their index
+    public static long schemaChecksum(FeatureSchema featureSchema) {
+        return featureSchema.checksum();
+    }
+
+    /* the model can only be used with the features and the classes it has been trained with,
+    a model of another schema would give wrong predictions without any error
+    */
+    public void checkCompatible(FeatureSchema expectedSchema, List<String> expectedClasses) {
+        if (schemaChecksum(featureSchema) != schemaChecksum(expectedSchema)) {
+            throw new NerdKidException("The model has been trained with another feature schema ("
+                    + featureSchema.sizeNoValue() + " + " + featureSchema.sizeWithValue() + " features), expected "
+                    + expectedSchema.sizeNoValue() + " + " + expectedSchema.sizeWithValue() + " features.");
+        }
+        if (!classes.equals(expectedClasses)) {
+            throw new NerdKidException("The model has been trained with other classes: " + classes + ", expected " + expectedClasses);
+        }
+    }
+
+    // read a model file, mapped in memory
+    public static BinaryModel read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // read a model from a stream (e.g. a resource of the jar, which can't be mapped)
+    public static BinaryModel read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int length;
+        while ((length = inputStream.read(buffer)) != -1) {
+            bytes.write(buffer, 0, length);
+        }
+        return read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    public static BinaryModel read(ByteBuffer buffer) {
+        if (buffer.remaining() < 40 || buffer.getInt(0) != MAGIC) {
+            throw new NerdKidException("Not a model of nerdKid.");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new NerdKidException("Unsupported version of the model format: " + version + ", expected " + VERSION);
+        }
+        int end = buffer.limit() - 8;
+        ByteBuffer content = buffer.duplicate();
+        content.limit(end);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (crc.getValue() != buffer.getLong(end)) {
+            throw new NerdKidException("The model file is corrupted, wrong checksum.");
+        }
+
+        buffer.position(8);
+        int numberOfFeatures = buffer.getInt();
+        int numberOfClasses = buffer.getInt();
+        int nbTrees = buffer.getInt();
+        int nbNodes = buffer.getInt();
+        long schemaChecksum = buffer.getLong();
+        List<String> featuresNoValue = readStrings(buffer);
+        List<String> features = readStrings(buffer);
+        List<String> classes = readStrings(buffer);
+        buffer.position(align(buffer.position()));
+
+        // the arrays are copied at once from the mapped file, without any object per node
+        double[] treeWeights = new double[nbTrees];
+        buffer.asDoubleBuffer().get(treeWeights);
+        buffer.position(buffer.position() + nbTrees * 8);
+        int[] roots = new int[nbTrees];
+        buffer.asIntBuffer().get(roots);
+        buffer.position(buffer.position() + nbTrees * 4);
+        int[] nodes = new int[nbNodes * FlatForest.NODE_STRIDE];
+        buffer.asIntBuffer().get(nodes);
+
+        FeatureSchema featureSchema = FeatureSchema.of(featuresNoValue, features);
+        if (schemaChecksum(featureSchema) != schemaChecksum) {
+            throw new NerdKidException("The model file is corrupted, wrong checksum of the feature schema.");
+        }
+        return new BinaryModel(featureSchema, classes,
+                new FlatForest(numberOfFeatures, numberOfClasses, roots, nodes), treeWeights);
+    }
+
+    public void write(File file) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            write(outputStream);
+        }
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(forest.numberOfFeatures());
+        output.writeInt(forest.numberOfClasses());
+        output.writeInt(forest.size());
+        output.writeInt(forest.numberOfNodes());
+        output.writeLong(schemaChecksum(featureSchema));
+        writeStrings(output, featureSchema.getFeaturesNoValue());
+        writeStrings(output, featureSchema.getFeatures());
+        writeStrings(output, classes);
+        while (output.size() != align(output.size())) {
+            output.writeByte(0);
+        }
+        for (double weight : treeWeights) {
+            output.writeDouble(weight);
+        }
+        for (int tree = 0; tree < forest.size(); tree++) {
+            output.writeInt(forest.root(tree));
+        }
+        for (int node = 0; node < forest.numberOfNodes(); node++) {
+            output.writeInt(forest.feature(node));
+            output.writeInt(forest.childClear(node));
+            output.writeInt(forest.childSet(node));
+        }
+        output.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        output.writeLong(crc.getValue());
+        output.flush();
+        bytes.writeTo(outputStream);
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static void writeStrings(DataOutputStream output, List<String> strings) throws IOException {
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static List<String> readStrings(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
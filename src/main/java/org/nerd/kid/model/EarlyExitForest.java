@@ -0,0 +1,133 @@
+package org.nerd.kid.model;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+import org.nerd.kid.service.NerdKidMetrics;
+
+import java.util.Arrays;
+
+/*
+inference engine evaluating the trees of a flat forest one after the other, stopping as soon as the vote is decided
+
+  - exact: the leading class has more votes than the runner-up plus the trees remaining, nothing can overtake it;
+    the prediction is always the one of the whole forest
+  - confidence (optional): after 'minTrees' trees, the leading class has at least the share 'confidence' of the votes;
+    the prediction might then differ from the one of the whole forest
+
+the trees are expected in the order of their out-of-bag accuracy (ForestCompiler.compile(forest, true)),
+the number of trees evaluated by prediction is reported by the histogram 'org.nerd.kid.model.EarlyExitForest.trees-evaluated'
+* */
+
+public final class EarlyExitForest implements ForestEngine {
+    // system properties of the confidence mode, -Dnerdkid.earlyExit.confidence=0.8 -Dnerdkid.earlyExit.minTrees=20
+    public static final String CONFIDENCE_PROPERTY = "nerdkid.earlyExit.confidence";
+    public static final String MIN_TREES_PROPERTY = "nerdkid.earlyExit.minTrees";
+
+    private final FlatForest forest;
+    private final int nbTrees;
+    private final double confidence;
+    private final int minTrees;
+
+    private final ThreadLocal<int[]> votesBuffer;
+    // the trees evaluated by the predictions of this engine, and of all the engines for the reporting
+    private final Histogram treesEvaluated = new Histogram(new ExponentiallyDecayingReservoir());
+    private final Histogram allTreesEvaluated;
+
+    // exact mode only, the predictions are the ones of the whole forest
+    public EarlyExitForest(FlatForest forest) {
+        this(forest, 1.0, forest.size());
+    }
+
+    public EarlyExitForest(FlatForest forest, double confidence, int minTrees) {
+        if (confidence <= 0.5 || confidence > 1.0) {
+            throw new IllegalArgumentException("The confidence must be in (0.5, 1], got " + confidence);
+        }
+        this.forest = forest;
+        this.nbTrees = forest.size();
+        this.confidence = confidence;
+        this.minTrees = Math.max(1, minTrees);
+        this.votesBuffer = ThreadLocal.withInitial(() -> new int[forest.numberOfClasses()]);
+        this.allTreesEvaluated = NerdKidMetrics.registry().histogram(MetricRegistry.name(EarlyExitForest.class, "trees-evaluated"));
+    }
+
+    // engine in the exact mode, or in the confidence mode if it is set by the system properties
+    public static EarlyExitForest fromSystemProperties(FlatForest forest) {
+        String confidence = System.getProperty(CONFIDENCE_PROPERTY);
+        if (confidence == null) {
+            return new EarlyExitForest(forest);
+        }
+        int minTrees = Integer.parseInt(System.getProperty(MIN_TREES_PROPERTY, String.valueOf(forest.size() / 5)));
+        return new EarlyExitForest(forest, Double.parseDouble(confidence), minTrees);
+    }
+
+    @Override
+    public int predict(FeatureVector features) {
+        forest.checkFeatures(features.size());
+        return predict(features.words(), 0, votesBuffer.get());
+    }
+
+    // the distribution of the votes needs every tree, there isn't any early exit
+    @Override
+    public int predict(FeatureVector features, int[] votes) {
+        return forest.predict(features, votes);
+    }
+
+    @Override
+    public void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        forest.checkFeatures(features.size());
+        final int[] votes = votesBuffer.get();
+        for (int row = from; row < to; row++) {
+            predictions[row] = predict(features.words(), features.offset(row), votes);
+        }
+    }
+
+    private int predict(long[] words, int offset, int[] votes) {
+        Arrays.fill(votes, 0);
+        // leading class and best number of votes of the other classes, kept along the vote
+        int leader = 0;
+        int runnerUpVotes = 0;
+        int tree = 0;
+        while (tree < nbTrees) {
+            int claz = forest.evaluate(tree, words, offset);
+            votes[claz]++;
+            tree++;
+            if (claz != leader) {
+                if (votes[claz] > votes[leader] || (votes[claz] == votes[leader] && claz < leader)) {
+                    runnerUpVotes = votes[leader];
+                    leader = claz;
+                } else if (votes[claz] > runnerUpVotes) {
+                    runnerUpVotes = votes[claz];
+                }
+            }
+
+            // strictly ahead, the runner-up can't even tie with all the trees remaining
+            if (votes[leader] - runnerUpVotes > nbTrees - tree) {
+                break;
+            }
+            if (tree >= minTrees && votes[leader] >= confidence * tree) {
+                break;
+            }
+        }
+        treesEvaluated.update(tree);
+        allTreesEvaluated.update(tree);
+        return tree == nbTrees ? FlatForest.whichMax(votes) : leader;
+    }
+
+    @Override
+    public int size() {
+        return nbTrees;
+    }
+
+    @Override
+    public int numberOfClasses() {
+        return forest.numberOfClasses();
+    }
+
+    // the trees evaluated by the predictions of this engine only
+    public Histogram getTreesEvaluated() {
+        return treesEvaluated;
+    }
+}
@@ -0,0 +1,172 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+
+import java.util.Arrays;
+
+/*
+Random Forest compiled into flat primitive arrays, for features in the format binary 0-1
+
+every node of every tree takes three consecutive ints in 'nodes':
+  - the index of the feature tested
+  - the child followed when the feature is 0
+  - the child followed when the feature is 1
+a child (or a root) is either the index of another node (>= 0) or a leaf encoded as ~class (< 0)
+the nodes of a tree are contiguous and in depth-first order
+* */
+
+public final class FlatForest implements ForestEngine {
+    static final int NODE_STRIDE = 3;
+    static final int FEATURE = 0;
+    static final int CHILD_CLEAR = 1;
+    static final int CHILD_SET = 2;
+
+    private final int numberOfFeatures;
+    private final int numberOfClasses;
+    private final int[] roots;
+    private final int[] nodes;
+
+    // votes of the trees, one array per thread so that the prediction doesn't allocate
+    private final ThreadLocal<int[]> votesBuffer;
+
+    public FlatForest(int numberOfFeatures, int numberOfClasses, int[] roots, int[] nodes) {
+        if (nodes.length % NODE_STRIDE != 0) {
+            throw new IllegalArgumentException("Invalid length of the nodes array: " + nodes.length);
+        }
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfClasses = numberOfClasses;
+        this.roots = roots;
+        this.nodes = nodes;
+        this.votesBuffer = ThreadLocal.withInitial(() -> new int[numberOfClasses]);
+    }
+
+    // the same forest with its trees in another order, order[i] being the tree evaluated at the position i
+    public FlatForest withTreeOrder(int[] order) {
+        if (order.length != roots.length) {
+            throw new IllegalArgumentException("The order has " + order.length + " trees, the forest " + roots.length);
+        }
+        int[] orderedRoots = new int[roots.length];
+        for (int i = 0; i < order.length; i++) {
+            orderedRoots[i] = roots[order[i]];
+        }
+        return new FlatForest(numberOfFeatures, numberOfClasses, orderedRoots, nodes);
+    }
+
+    public static boolean isLeaf(int node) {
+        return node < 0;
+    }
+
+    public static int leafClass(int node) {
+        return ~node;
+    }
+
+    public static int leaf(int claz) {
+        return ~claz;
+    }
+
+    @Override
+    public int predict(FeatureVector features) {
+        return predict(features, votesBuffer.get());
+    }
+
+    @Override
+    public int predict(FeatureVector features, int[] votes) {
+        checkFeatures(features.size());
+        final long[] words = features.words();
+        Arrays.fill(votes, 0);
+        for (int tree = 0; tree < roots.length; tree++) {
+            votes[evaluate(tree, words, 0)]++;
+        }
+        return whichMax(votes);
+    }
+
+    /* the batch is evaluated tree by tree: the nodes of a tree stay in the cache while it goes through every row,
+    instead of the whole forest being walked again for every row
+    */
+    @Override
+    public void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        checkFeatures(features.size());
+        final long[] words = features.words();
+        final int rows = to - from;
+        final int[] votes = new int[rows * numberOfClasses];
+        for (int tree = 0; tree < roots.length; tree++) {
+            for (int row = 0; row < rows; row++) {
+                votes[row * numberOfClasses + evaluate(tree, words, features.offset(from + row))]++;
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            predictions[from + row] = whichMax(votes, row * numberOfClasses, numberOfClasses);
+        }
+    }
+
+    // class given by a single tree, for the bitset starting at the word 'offset' of 'words'
+    public int evaluate(int tree, long[] words, int offset) {
+        int node = roots[tree];
+        while (node >= 0) {
+            final int base = node * NODE_STRIDE;
+            final int feature = nodes[base + FEATURE];
+            node = ((words[offset + (feature >>> 6)] >>> feature) & 1L) != 0 ? nodes[base + CHILD_SET] : nodes[base + CHILD_CLEAR];
+        }
+        return ~node;
+    }
+
+    // index of the class with the most votes, the smallest index in case of tie (as Smile does)
+    static int whichMax(int[] votes) {
+        return whichMax(votes, 0, votes.length);
+    }
+
+    // index of the class with the most votes among votes[from, from + length)
+    static int whichMax(int[] votes, int from, int length) {
+        int which = 0;
+        int max = votes[from];
+        for (int i = 1; i < length; i++) {
+            if (votes[from + i] > max) {
+                max = votes[from + i];
+                which = i;
+            }
+        }
+        return which;
+    }
+
+    void checkFeatures(int size) {
+        if (size < numberOfFeatures) {
+            throw new IllegalArgumentException("The model expects " + numberOfFeatures + " features, got " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return roots.length;
+    }
+
+    @Override
+    public int numberOfClasses() {
+        return numberOfClasses;
+    }
+
+    public int numberOfFeatures() {
+        return numberOfFeatures;
+    }
+
+    public int numberOfNodes() {
+        return nodes.length / NODE_STRIDE;
+    }
+
+    // root of a tree, node index or leaf
+    public int root(int tree) {
+        return roots[tree];
+    }
+
+    public int feature(int node) {
+        return nodes[node * NODE_STRIDE + FEATURE];
+    }
+
+    public int childClear(int node) {
+        return nodes[node * NODE_STRIDE + CHILD_CLEAR];
+    }
+
+    public int childSet(int node) {
+        return nodes[node * NODE_STRIDE + CHILD_SET];
+    }
+}
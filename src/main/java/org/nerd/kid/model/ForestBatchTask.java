@@ -0,0 +1,39 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+
+import java.util.concurrent.RecursiveAction;
+
+/*
+fork/join task predicting the rows [from, to) of a batch, split in halves until the ranges are small enough
+* */
+
+class ForestBatchTask extends RecursiveAction {
+    // rows predicted by a single task, big enough for the engine to evaluate the trees across the rows
+    static final int THRESHOLD = 256;
+
+    private final ForestEngine engine;
+    private final FeatureMatrix features;
+    private final int from;
+    private final int to;
+    private final int[] predictions;
+
+    ForestBatchTask(ForestEngine engine, FeatureMatrix features, int from, int to, int[] predictions) {
+        this.engine = engine;
+        this.features = features;
+        this.from = from;
+        this.to = to;
+        this.predictions = predictions;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            engine.predict(features, from, to, predictions);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new ForestBatchTask(engine, features, from, middle, predictions),
+                new ForestBatchTask(engine, features, middle, to, predictions));
+    }
+}
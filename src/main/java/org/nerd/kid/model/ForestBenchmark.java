@@ -0,0 +1,74 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+import org.nerd.kid.extractor.FeatureSchema;
+import smile.classification.RandomForest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+benchmark of the predictions of the bundled model, one by one and in a batch, on sparse random rows (the entities have
+few features): the batch is evaluated on a single thread, so that only the evaluation of the trees across the rows is
+measured, then split across the cores as predictBatch does, e.g. with the rows, the engines and the rounds measured
+mvn exec:java -Dexec.mainClass="org.nerd.kid.model.ForestBenchmark" -Dexec.args="10000 SMILE,FLAT 10"
+* */
+
+public class ForestBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        String[] engineNames = args.length > 1 ? args[1].split(",") : new String[]{"SMILE", "FLAT", "QUICKSCORER", "GENERATED"};
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        RandomForest forest = new WikidataNERPredictor(null).getForest();
+        FeatureMatrix features = randomRows(rows, FeatureSchema.getInstance().size(), new Random(42));
+        FeatureVector[] vectors = new FeatureVector[rows];
+        for (int row = 0; row < rows; row++) {
+            vectors[row] = features.row(row);
+        }
+
+        System.out.println(rows + " rows, " + forest.size() + " trees, " + Runtime.getRuntime().availableProcessors() + " cores");
+        for (String engineName : engineNames) {
+            ForestEngine engine = ForestEngineType.fromName(engineName, ForestEngineType.SMILE).create(forest);
+            int[] predictions = new int[rows];
+            long single = measure(rounds, () -> {
+                for (int row = 0; row < rows; row++) {
+                    predictions[row] = engine.predict(vectors[row]);
+                }
+            });
+            long batch = measure(rounds, () -> engine.predict(features, 0, rows, predictions));
+            long parallel = measure(rounds, () -> engine.predict(features));
+            System.out.println(String.format("%-12s single %6d ms, batch %6d ms (x%.2f), batch on the cores %6d ms (x%.2f)",
+                    engineName, single, batch, (double) single / batch, parallel, (double) single / parallel));
+        }
+    }
+
+    // best time of the rounds in milliseconds, after the warm up of the JIT
+    private static long measure(int rounds, Runnable predictions) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            predictions.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            predictions.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(best));
+    }
+
+    // rows of 1 to 6 features set
+    private static FeatureMatrix randomRows(int rows, int size, Random random) {
+        FeatureMatrix features = new FeatureMatrix(rows, size);
+        for (int row = 0; row < rows; row++) {
+            int nbSet = 1 + random.nextInt(6);
+            for (int j = 0; j < nbSet; j++) {
+                features.set(row, random.nextInt(size));
+            }
+        }
+        return features;
+    }
+}
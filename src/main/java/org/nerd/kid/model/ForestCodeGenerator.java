@@ -0,0 +1,173 @@
+package org.nerd.kid.model;
+
+import javassist.ClassClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.Modifier;
+import javassist.bytecode.CodeAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+class to generate a Java class evaluating the forest, at the loading time of the model
+
+every tree becomes a static method with its splits as plain 'if' branches and its leaves as 'return class;',
+the class is compiled with Javassist and defined in the JVM, so that the JIT can inline and optimize the trees.
+A subtree too big is generated in its own method: HotSpot doesn't compile the methods of more than 8000 bytes of bytecode.
+* */
+
+public final class ForestCodeGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForestCodeGenerator.class);
+
+    // a child subtree of more nodes than this is called instead of being inlined, a method has at most 2 * 150 + 1 nodes
+    private static final int MAX_INLINED_NODES = 150;
+    // size of bytecode above which HotSpot doesn't compile a method (-XX:-DontCompileHugeMethods)
+    private static final int HUGE_METHOD_LIMIT = 8000;
+
+    // the models can be reloaded, every class generated gets its own name
+    private static final AtomicInteger GENERATED_CLASSES = new AtomicInteger();
+
+    private final FlatForest forest;
+    private final int[] subtreeSize;
+    // nodes whose method is still to be generated
+    private final Deque<Integer> pendingNodes = new ArrayDeque<>();
+
+    private ForestCodeGenerator(FlatForest forest) {
+        this.forest = forest;
+        this.subtreeSize = new int[forest.numberOfNodes()];
+        for (int tree = 0; tree < forest.size(); tree++) {
+            computeSubtreeSize(forest.root(tree));
+        }
+    }
+
+    /* generate the engine of the flat forest given
+    if the class can't be generated, the flat forest itself is used and the problem is logged
+    */
+    public static ForestEngine generate(FlatForest forest) {
+        try {
+            return new ForestCodeGenerator(forest).generateEngine();
+        } catch (Exception e) {
+            LOGGER.info("Some errors encountered when generating the class of the forest, the flat forest is used instead", e);
+            return forest;
+        }
+    }
+
+    private GeneratedForestEngine generateEngine() throws Exception {
+        long start = System.currentTimeMillis();
+
+        ClassPool pool = new ClassPool(true);
+        // the class loader of the web application might not be the one of the system
+        pool.insertClassPath(new ClassClassPath(GeneratedForestEngine.class));
+        String className = GeneratedForestEngine.class.getName() + "Impl" + GENERATED_CLASSES.incrementAndGet();
+        CtClass generated = pool.makeClass(className, pool.get(GeneratedForestEngine.class.getName()));
+        generated.setModifiers(Modifier.PUBLIC | Modifier.FINAL);
+        generated.addConstructor(CtNewConstructor.make(
+                new CtClass[]{CtClass.intType, CtClass.intType, CtClass.intType}, new CtClass[0], generated));
+
+        StringBuilder vote = new StringBuilder("protected void vote(long[] w, int o, int[] votes) {\nint c;\n");
+        for (int tree = 0; tree < forest.size(); tree++) {
+            int root = forest.root(tree);
+            if (FlatForest.isLeaf(root)) {
+                vote.append("c = ").append(FlatForest.leafClass(root)).append(";\n");
+            } else {
+                vote.append("c = ").append(methodCall(root)).append(";\n");
+            }
+            vote.append("votes[c] = votes[c] + 1;\n");
+        }
+        vote.append("}");
+
+        List<String> methods = new ArrayList<>();
+        while (!pendingNodes.isEmpty()) {
+            int node = pendingNodes.poll();
+            StringBuilder method = new StringBuilder("private static int node").append(node).append("(long[] w, int o) {\n");
+            appendNode(method, node, true);
+            methods.add(method.append("}").toString());
+        }
+        // a method is always generated after the one calling it, the callees have to be compiled first
+        Collections.reverse(methods);
+        methods.add(vote.toString());
+
+        int bytecodeSize = 0;
+        for (String source : methods) {
+            CtMethod method = CtNewMethod.make(source, generated);
+            generated.addMethod(method);
+            CodeAttribute code = method.getMethodInfo().getCodeAttribute();
+            bytecodeSize += code.getCodeLength();
+            if (code.getCodeLength() > HUGE_METHOD_LIMIT) {
+                LOGGER.info("The method " + method.getName() + " of the forest generated has " + code.getCodeLength()
+                        + " bytes of bytecode, it won't be compiled by the JIT");
+            }
+        }
+
+        byte[] bytecode = generated.toBytecode();
+        generated.detach();
+        Class<?> engineClass = new GeneratedClassLoader(GeneratedForestEngine.class.getClassLoader()).define(className, bytecode);
+        GeneratedForestEngine engine = (GeneratedForestEngine) engineClass
+                .getConstructor(int.class, int.class, int.class)
+                .newInstance(forest.numberOfFeatures(), forest.numberOfClasses(), forest.size());
+
+        long generationTime = System.currentTimeMillis() - start;
+        engine.setGenerationTime(generationTime);
+        LOGGER.info("Class of the forest generated in " + generationTime + " ms: " + forest.size() + " trees, "
+                + methods.size() + " methods, " + bytecodeSize + " bytes of bytecode");
+        return engine;
+    }
+
+    private String methodCall(int node) {
+        pendingNodes.add(node);
+        return "node" + node + "(w, o)";
+    }
+
+    private void appendNode(StringBuilder source, int node, boolean methodRoot) {
+        if (FlatForest.isLeaf(node)) {
+            source.append("return ").append(FlatForest.leafClass(node)).append(";\n");
+        } else if (!methodRoot && subtreeSize[node] > MAX_INLINED_NODES) {
+            source.append("return ").append(methodCall(node)).append(";\n");
+        } else {
+            source.append("if (").append(test(forest.feature(node))).append(") {\n");
+            appendNode(source, forest.childSet(node), false);
+            source.append("} else {\n");
+            appendNode(source, forest.childClear(node), false);
+            source.append("}\n");
+        }
+    }
+
+    // test of the bit of the feature in its word from the offset 'o' of the row, the bit 63 being the sign of the word
+    private static String test(int feature) {
+        int word = feature >>> 6;
+        int bit = feature & 63;
+        if (bit == 63) {
+            return "w[o + " + word + "] < 0L";
+        }
+        return "(w[o + " + word + "] & " + (1L << bit) + "L) != 0L";
+    }
+
+    private int computeSubtreeSize(int node) {
+        if (FlatForest.isLeaf(node)) {
+            return 0;
+        }
+        subtreeSize[node] = 1 + computeSubtreeSize(forest.childClear(node)) + computeSubtreeSize(forest.childSet(node));
+        return subtreeSize[node];
+    }
+
+    // class loader defining the classes generated, the engine being resolved from its parent
+    private static class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+}
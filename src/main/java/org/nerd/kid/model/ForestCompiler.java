@@ -0,0 +1,178 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.exception.NerdKidException;
+import smile.classification.DecisionTree;
+import smile.classification.RandomForest;
+import smile.data.Attribute;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+class to compile a Random Forest model of Smile into a flat forest, at the loading time of the model
+
+Smile doesn't expose the nodes of its trees, they are read by reflection.
+Since every feature is binary (0-1), each split is resolved into the child followed when the feature is 0
+and the child followed when it is 1; a split leading to the same child in both cases is removed.
+* */
+
+public final class ForestCompiler {
+    private static final Field FOREST_TREES = field(RandomForest.class, "trees");
+    private static final Field FOREST_CLASSES = field(RandomForest.class, "k");
+    private static final Field TREE_TREE = field(innerClass(RandomForest.class, "Tree"), "tree");
+    // accuracy of the tree on its out-of-bag samples
+    private static final Field TREE_WEIGHT = field(innerClass(RandomForest.class, "Tree"), "weight");
+    private static final Field DECISION_TREE_ROOT = field(DecisionTree.class, "root");
+    private static final Field DECISION_TREE_ATTRIBUTES = field(DecisionTree.class, "attributes");
+
+    private static final Class<?> NODE = innerClass(DecisionTree.class, "Node");
+    private static final Field NODE_OUTPUT = field(NODE, "output");
+    private static final Field NODE_SPLIT_FEATURE = field(NODE, "splitFeature");
+    private static final Field NODE_SPLIT_VALUE = field(NODE, "splitValue");
+    private static final Field NODE_TRUE_CHILD = field(NODE, "trueChild");
+    private static final Field NODE_FALSE_CHILD = field(NODE, "falseChild");
+
+    private final Attribute[] attributes;
+    private int[] nodes = new int[1024 * FlatForest.NODE_STRIDE];
+    private int nbNodes = 0;
+
+    private ForestCompiler(Attribute[] attributes) {
+        this.attributes = attributes;
+    }
+
+    public static FlatForest compile(RandomForest forest) {
+        List<?> trees = (List<?>) get(FOREST_TREES, forest);
+        if (trees.isEmpty()) {
+            throw new NerdKidException("The model doesn't contain any tree.");
+        }
+        Attribute[] attributes = (Attribute[]) get(DECISION_TREE_ATTRIBUTES, get(TREE_TREE, trees.get(0)));
+
+        ForestCompiler compiler = new ForestCompiler(attributes);
+        int[] roots = new int[trees.size()];
+        for (int i = 0; i < trees.size(); i++) {
+            DecisionTree tree = (DecisionTree) get(TREE_TREE, trees.get(i));
+            roots[i] = compiler.compileNode(get(DECISION_TREE_ROOT, tree));
+        }
+
+        return new FlatForest(attributes.length, numberOfClasses(forest), roots,
+                Arrays.copyOf(compiler.nodes, compiler.nbNodes * FlatForest.NODE_STRIDE));
+    }
+
+    /* compile the forest, the trees of the best out-of-bag accuracy first if 'strongestFirst'
+    the order doesn't change the majority vote, but it lets an early exit happen sooner
+    */
+    public static FlatForest compile(RandomForest forest, boolean strongestFirst) {
+        FlatForest flatForest = compile(forest);
+        return strongestFirst ? flatForest.withTreeOrder(strongestFirst(treeWeights(forest))) : flatForest;
+    }
+
+    // accuracy of every tree on its out-of-bag samples, in the order of the model
+    public static double[] treeWeights(RandomForest forest) {
+        List<?> trees = (List<?>) get(FOREST_TREES, forest);
+        double[] weights = new double[trees.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (Double) get(TREE_WEIGHT, trees.get(i));
+        }
+        return weights;
+    }
+
+    // order of the trees by decreasing weight, the order of the model being kept for the same weight
+    public static int[] strongestFirst(double[] treeWeights) {
+        Integer[] order = new Integer[treeWeights.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(treeWeights[b], treeWeights[a]));
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    // decision trees of the forest, in the order of the model
+    public static List<DecisionTree> trees(RandomForest forest) {
+        List<?> trees = (List<?>) get(FOREST_TREES, forest);
+        List<DecisionTree> decisionTrees = new ArrayList<>(trees.size());
+        for (Object tree : trees) {
+            decisionTrees.add((DecisionTree) get(TREE_TREE, tree));
+        }
+        return decisionTrees;
+    }
+
+    public static int numberOfClasses(RandomForest forest) {
+        return (Integer) get(FOREST_CLASSES, forest);
+    }
+
+    // returns the index of the node compiled, or the leaf
+    private int compileNode(Object node) {
+        Object trueChild = get(NODE_TRUE_CHILD, node);
+        Object falseChild = get(NODE_FALSE_CHILD, node);
+        if (trueChild == null && falseChild == null) {
+            return FlatForest.leaf((Integer) get(NODE_OUTPUT, node));
+        }
+
+        int feature = (Integer) get(NODE_SPLIT_FEATURE, node);
+        double splitValue = (Double) get(NODE_SPLIT_VALUE, node);
+
+        // the same tests as the nodes of Smile, for a feature valued 0 and for a feature valued 1
+        Object childClear;
+        Object childSet;
+        Attribute.Type type = attributes[feature].getType();
+        if (type == Attribute.Type.NOMINAL) {
+            childClear = 0.0 == splitValue ? trueChild : falseChild;
+            childSet = 1.0 == splitValue ? trueChild : falseChild;
+        } else if (type == Attribute.Type.NUMERIC) {
+            childClear = 0.0 <= splitValue ? trueChild : falseChild;
+            childSet = 1.0 <= splitValue ? trueChild : falseChild;
+        } else {
+            throw new NerdKidException("Unsupported attribute type: " + type);
+        }
+
+        // both values lead to the same child, the test is useless
+        if (childClear == childSet) {
+            return compileNode(childClear);
+        }
+
+        int index = nbNodes++;
+        if (nbNodes * FlatForest.NODE_STRIDE > nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        }
+        int base = index * FlatForest.NODE_STRIDE;
+        nodes[base + FlatForest.FEATURE] = feature;
+        int clear = compileNode(childClear);
+        int set = compileNode(childSet);
+        nodes[base + FlatForest.CHILD_CLEAR] = clear;
+        nodes[base + FlatForest.CHILD_SET] = set;
+        return index;
+    }
+
+    private static Class<?> innerClass(Class<?> owner, String simpleName) {
+        for (Class<?> claz : owner.getDeclaredClasses()) {
+            if (claz.getSimpleName().equals(simpleName)) {
+                return claz;
+            }
+        }
+        throw new NerdKidException("Class " + owner.getName() + "$" + simpleName + " not found, unsupported version of Smile.");
+    }
+
+    private static Field field(Class<?> owner, String name) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new NerdKidException("Field " + owner.getName() + "." + name + " not found, unsupported version of Smile.", e);
+        }
+    }
+
+    private static Object get(Field field, Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new NerdKidException("Field " + field.getName() + " can't be read from the model.", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+interface of the inference engines evaluating the Random Forest model on the binary features of an element,
+the result is the index of the class in the class mapper ('/resources/class_mapper.csv')
+* */
+
+public interface ForestEngine {
+    // index of the class predicted by the majority of the trees
+    int predict(FeatureVector features);
+
+    /* same prediction, the votes of the trees for every class being also given in 'votes' (of numberOfClasses() length),
+    in the same pass over the trees
+    */
+    int predict(FeatureVector features, int[] votes);
+
+    // number of trees of the forest
+    int size();
+
+    // number of classes the forest can predict
+    int numberOfClasses();
+
+    // predictions of the rows [from, to) of a batch, the engines override it to evaluate the batch in a single pass
+    default void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        for (int row = from; row < to; row++) {
+            predictions[row] = predict(features.row(row));
+        }
+    }
+
+    // predictions of every row of a batch, the batch being split across the cores
+    default int[] predict(FeatureMatrix features) {
+        int[] predictions = new int[features.rows()];
+        ForkJoinPool.commonPool().invoke(new ForestBatchTask(this, features, 0, features.rows(), predictions));
+        return predictions;
+    }
+}
@@ -0,0 +1,79 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.exception.NerdKidException;
+import smile.classification.RandomForest;
+
+import java.util.Arrays;
+
+/*
+inference engines available behind the predictor, they give the same predictions as the Smile model
+* */
+
+public enum ForestEngineType {
+    // object graph of the Smile model
+    SMILE {
+        @Override
+        public ForestEngine create(RandomForest forest) {
+            return new SmileForestEngine(forest);
+        }
+
+        @Override
+        public ForestEngine create(FlatForest forest, double[] treeWeights) {
+            throw new NerdKidException("The Smile engine needs the model of Smile (model.zip), not a compiled model.");
+        }
+    },
+    // forest compiled into flat primitive arrays
+    FLAT {
+        @Override
+        public ForestEngine create(FlatForest forest, double[] treeWeights) {
+            return forest;
+        }
+    },
+    // bitvectors of the leaves masked by the features set, for the bulk classification
+    QUICKSCORER {
+        @Override
+        public ForestEngine create(FlatForest forest, double[] treeWeights) {
+            return QuickScorerForest.build(forest);
+        }
+    },
+    // Java class generated with a method per tree, for the lowest latency of a single prediction
+    GENERATED {
+        @Override
+        public ForestEngine create(FlatForest forest, double[] treeWeights) {
+            return ForestCodeGenerator.generate(forest);
+        }
+    },
+    // flat forest evaluated tree by tree, the strongest trees first, until the vote is decided
+    EARLY_EXIT {
+        @Override
+        public ForestEngine create(FlatForest forest, double[] treeWeights) {
+            return EarlyExitForest.fromSystemProperties(forest.withTreeOrder(ForestCompiler.strongestFirst(treeWeights)));
+        }
+    };
+
+    // system property choosing the engine of the predictors built without an explicit engine (-Dnerdkid.engine=GENERATED)
+    public static final String ENGINE_PROPERTY = "nerdkid.engine";
+
+    public ForestEngine create(RandomForest forest) {
+        return create(ForestCompiler.compile(forest), ForestCompiler.treeWeights(forest));
+    }
+
+    // engine of a forest already compiled (binary model), with the out-of-bag accuracy of its trees
+    public abstract ForestEngine create(FlatForest forest, double[] treeWeights);
+
+    // engine given by its name (case insensitive), or the default one if the name is missing
+    public static ForestEngineType fromName(String name, ForestEngineType defaultType) {
+        if (name == null || name.trim().isEmpty()) {
+            return defaultType;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new NerdKidException("Unknown inference engine \"" + name + "\", expected one of " + Arrays.toString(values()), e);
+        }
+    }
+
+    public static ForestEngineType fromSystemProperty(ForestEngineType defaultType) {
+        return fromName(System.getProperty(ENGINE_PROPERTY), defaultType);
+    }
+}
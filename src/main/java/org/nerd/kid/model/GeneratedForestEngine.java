@@ -0,0 +1,82 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+
+import java.util.Arrays;
+
+/*
+base class of the inference engines generated at the loading time of the model by ForestCodeGenerator,
+the subclass generated contains the splits of every tree as plain 'if' branches on the words of the feature vector
+
+it must stay public: the class generated is defined by another class loader, so it is in another runtime package
+* */
+
+public abstract class GeneratedForestEngine implements ForestEngine {
+    private final int numberOfFeatures;
+    private final int numberOfClasses;
+    private final int nbTrees;
+
+    private final ThreadLocal<int[]> votesBuffer;
+
+    // time spent generating and loading the class, in milliseconds
+    private long generationTime;
+
+    protected GeneratedForestEngine(int numberOfFeatures, int numberOfClasses, int nbTrees) {
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfClasses = numberOfClasses;
+        this.nbTrees = nbTrees;
+        this.votesBuffer = ThreadLocal.withInitial(() -> new int[numberOfClasses]);
+    }
+
+    // adds the vote of every tree for the features given as the bitset of the words [offset, ...)
+    protected abstract void vote(long[] words, int offset, int[] votes);
+
+    @Override
+    public int predict(FeatureVector features) {
+        return predict(features, votesBuffer.get());
+    }
+
+    @Override
+    public int predict(FeatureVector features, int[] votes) {
+        checkFeatures(features.size());
+        Arrays.fill(votes, 0);
+        vote(features.words(), 0, votes);
+        return FlatForest.whichMax(votes);
+    }
+
+    @Override
+    public void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        checkFeatures(features.size());
+        final int[] votes = votesBuffer.get();
+        for (int row = from; row < to; row++) {
+            Arrays.fill(votes, 0);
+            vote(features.words(), features.offset(row), votes);
+            predictions[row] = FlatForest.whichMax(votes);
+        }
+    }
+
+    private void checkFeatures(int size) {
+        if (size < numberOfFeatures) {
+            throw new IllegalArgumentException("The model expects " + numberOfFeatures + " features, got " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nbTrees;
+    }
+
+    @Override
+    public int numberOfClasses() {
+        return numberOfClasses;
+    }
+
+    public long getGenerationTime() {
+        return generationTime;
+    }
+
+    void setGenerationTime(long generationTime) {
+        this.generationTime = generationTime;
+    }
+}
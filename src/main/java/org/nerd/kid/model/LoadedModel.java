@@ -0,0 +1,75 @@
+package org.nerd.kid.model;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.nerd.kid.exception.NerdKidException;
+import smile.classification.RandomForest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/*
+a model ready for the predictions: its inference engine, the model of Smile (only for the Smile engine),
+the version of the model and where it comes from; immutable, it is swapped as a whole by ModelHolder
+* */
+
+public final class LoadedModel {
+    private final ForestEngine engine;
+    private final RandomForest forest;
+    private final String version;
+    private final String source;
+    private final long loadedAt;
+
+    public LoadedModel(ForestEngine engine, RandomForest forest, String version, String source) {
+        this.engine = engine;
+        this.forest = forest;
+        this.version = version;
+        this.source = source;
+        this.loadedAt = System.currentTimeMillis();
+    }
+
+    // the same version for the same trees, whatever the format of the file (SHA-256 of the binary format, 16 hex digits)
+    public static String version(BinaryModel model) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream outputStream = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest)) {
+                model.write(outputStream);
+            }
+            StringBuilder version = new StringBuilder();
+            byte[] hash = digest.digest();
+            for (int i = 0; i < 8; i++) {
+                version.append(String.format("%02x", hash[i]));
+            }
+            return version.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new NerdKidException("Cannot compute the version of the model.", e);
+        }
+    }
+
+    public ForestEngine getEngine() {
+        return engine;
+    }
+
+    public RandomForest getForest() {
+        return forest;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "model " + version + " (" + source + ")";
+    }
+}
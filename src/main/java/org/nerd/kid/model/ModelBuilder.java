@@ -4,6 +4,8 @@ import com.thoughtworks.xstream.XStream;
 import org.apache.commons.io.FileUtils;
 import org.nerd.kid.arff.ArffParser;
 import org.nerd.kid.evaluation.ModelEvaluation;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
 import org.nerd.kid.service.NerdKidPaths;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -254,6 +256,18 @@ public class ModelBuilder {
         }
     }
 
+    // method to save the model built in the binary format, with the feature schema and the classes of the mapper files
+    public void saveModelToBinary(File modelFile) {
+        try {
+            if (forest == null) {
+                throw new RuntimeException("No model exists.");
+            }
+            BinaryModel.fromForest(forest, FeatureSchema.getInstance(), ClassExtractor.classMap).write(modelFile);
+        } catch (IOException e) {
+            LOGGER.info("Some errors encountered when saving the model into a binary file in \""+ modelFile + "\"", e);
+        }
+    }
+
     // create zip file from the model built
     public void createZip(byte[] inputByte, File outputFile) throws IOException {
         GZIPOutputStream gzipOutputStream = null;
@@ -348,6 +362,7 @@ public class ModelBuilder {
     public static void main(String[] args) throws Exception {
         final String pathnameXML = "/tmp/model.xml";
         final String pathnameZIP = "/tmp/model.zip";
+        final String pathnameBIN = "/tmp/model.bin";
         String fileInput = "Training.arff";
         String fileOutput = "Result_Trained_Model.txt";
         String pathInput = NerdKidPaths.RESULT_ARFF + "/" + fileInput;
@@ -363,6 +378,7 @@ public class ModelBuilder {
         modelBuilder.saveModelToXML(new File(pathnameXML));
         byte[] resultInBytes= modelBuilder.readBytesFromFile(new File(pathnameXML));
         modelBuilder.createZip(resultInBytes, new File(pathnameZIP));
-        System.out.println("Model has been saved in " + pathnameXML + " and " + pathnameZIP);
+        modelBuilder.saveModelToBinary(new File(pathnameBIN));
+        System.out.println("Model has been saved in " + pathnameXML + ", " + pathnameZIP + " and " + pathnameBIN);
     }
 }
@@ -0,0 +1,48 @@
+package org.nerd.kid.model;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.security.AnyTypePermission;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import smile.classification.RandomForest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/*
+class to convert a model of Smile (XML compressed with GZIP, 'model.zip') into the binary format of the model ('model.bin'),
+with the feature schema and the classes of the mapper files in '/resources'
+
+usage: <input model.zip (the bundled model if missing)> <output model.bin>
+* */
+
+public class ModelConverter {
+
+    // model of Smile serialized in XML by XStream (decompressed)
+    public static RandomForest readForest(InputStream modelXml) {
+        XStream streamer = new XStream();
+        XStream.setupDefaultSecurity(streamer);
+        streamer.addPermission(AnyTypePermission.ANY);
+        return (RandomForest) streamer.fromXML(modelXml);
+    }
+
+    public static BinaryModel convert(InputStream modelXml) {
+        return BinaryModel.fromForest(readForest(modelXml), FeatureSchema.getInstance(), ClassExtractor.classMap);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String fileOutput = args.length > 1 ? args[1] : "/tmp/model.bin";
+        InputStream modelZip = args.length > 0
+                ? new FileInputStream(args[0])
+                : ModelConverter.class.getResourceAsStream("model.zip");
+        BinaryModel model;
+        try (InputStream inputStream = new GZIPInputStream(modelZip)) {
+            model = convert(inputStream);
+        }
+        model.write(new File(fileOutput));
+        System.out.println("Model of " + model.getForest().size() + " trees and " + model.getForest().numberOfNodes()
+                + " nodes has been saved in " + fileOutput);
+    }
+}
@@ -0,0 +1,197 @@
+package org.nerd.kid.model;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.nerd.kid.service.NerdKidMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smile.classification.RandomForest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/*
+holder of the model used by the predictions, which can be replaced while the predictions go on
+
+a new model is loaded, validated against the feature schema and the classes, and warmed up (the engine being compiled
+by the JIT) by the thread reloading it; then the reference is swapped at once: the predictions don't wait for anything,
+a prediction started with the previous model simply ends with it. The previous model is kept for a rollback.
+
+the version of the current model is reported by the gauge 'org.nerd.kid.model.ModelHolder.version'
+* */
+
+public class ModelHolder {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelHolder.class);
+
+    public static final String MODEL_BIN = "model.bin";
+    public static final String MODEL_ZIP = "model.zip";
+
+    // random feature vectors predicted by a new model before it is used
+    private static final int WARMUP_VECTORS = 5000;
+
+    private final ForestEngineType engineType;
+    private final AtomicReference<LoadedModel> current;
+    private final AtomicReference<LoadedModel> previous = new AtomicReference<>();
+    // called with the new model after every swap (e.g. to clear the caches of predictions)
+    private final List<Consumer<LoadedModel>> listeners = new CopyOnWriteArrayList<>();
+
+    private final Counter reloads;
+    private final Counter reloadFailures;
+
+    public ModelHolder(ForestEngineType engineType, LoadedModel model) {
+        this.engineType = engineType;
+        this.current = new AtomicReference<>(model);
+        MetricRegistry registry = NerdKidMetrics.registry();
+        this.reloads = registry.counter(MetricRegistry.name(ModelHolder.class, "reloads"));
+        this.reloadFailures = registry.counter(MetricRegistry.name(ModelHolder.class, "reload-failures"));
+    }
+
+    // holder of the model shared by the JVM (see SharedModels)
+    public static ModelHolder shared(ForestEngineType engineType) {
+        return new ModelHolder(engineType, SharedModels.model(engineType));
+    }
+
+    // gauges of the version of the model and of its loading time, the ones of the last holder registered are reported
+    public void registerMetrics(MetricRegistry registry) {
+        String versionName = MetricRegistry.name(ModelHolder.class, "version");
+        String loadedAtName = MetricRegistry.name(ModelHolder.class, "loaded-at");
+        registry.remove(versionName);
+        registry.remove(loadedAtName);
+        registry.register(versionName, (Gauge<String>) () -> current.get() != null ? current.get().getVersion() : null);
+        registry.register(loadedAtName, (Gauge<Long>) () -> current.get() != null ? current.get().getLoadedAt() : null);
+    }
+
+    public ForestEngineType getEngineType() {
+        return engineType;
+    }
+
+    public LoadedModel current() {
+        return current.get();
+    }
+
+    // engine of the current model, null if there isn't any model
+    public ForestEngine engine() {
+        LoadedModel model = current.get();
+        return model != null ? model.getEngine() : null;
+    }
+
+    public LoadedModel previous() {
+        return previous.get();
+    }
+
+    public void addListener(Consumer<LoadedModel> listener) {
+        listeners.add(listener);
+    }
+
+    // use the model given from now on, the current one being kept for a rollback
+    public synchronized void swap(LoadedModel model) {
+        previous.set(current.getAndSet(model));
+        LOGGER.info("Now using the " + model + ", previously the " + previous.get());
+        for (Consumer<LoadedModel> listener : listeners) {
+            listener.accept(model);
+        }
+    }
+
+    // load, check and warm up the model of the file given (model.bin or model.zip), then use it; the current model is kept on failure
+    public synchronized LoadedModel load(Path file) {
+        reloads.inc();
+        try {
+            long start = System.currentTimeMillis();
+            LoadedModel model = read(file);
+            warmUp(model.getEngine());
+            swap(model);
+            LOGGER.info("Model \"" + file + "\" loaded in " + (System.currentTimeMillis() - start) + " ms");
+            return model;
+        } catch (IOException | RuntimeException e) {
+            reloadFailures.inc();
+            throw new NerdKidException("Cannot load the model \"" + file + "\", still using the " + current.get(), e);
+        }
+    }
+
+    // model of the directory given: the binary model, or the model of Smile if there isn't any (always it for the Smile engine)
+    public LoadedModel loadFromDirectory(Path directory) {
+        Path modelBin = directory.resolve(MODEL_BIN);
+        if (engineType != ForestEngineType.SMILE && Files.exists(modelBin)) {
+            return load(modelBin);
+        }
+        return load(directory.resolve(MODEL_ZIP));
+    }
+
+    // back to the previous model, which becomes the previous one in its turn
+    public synchronized LoadedModel rollback() {
+        LoadedModel model = previous.get();
+        if (model == null) {
+            throw new NerdKidException("There isn't any previous model to roll back to.");
+        }
+        swap(model);
+        return model;
+    }
+
+    private LoadedModel read(Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        FeatureSchema featureSchema = FeatureSchema.getInstance();
+        List<String> classes = ClassExtractor.classMap;
+        if (file.getFileName().toString().endsWith(".bin")) {
+            if (engineType == ForestEngineType.SMILE) {
+                throw new NerdKidException("The Smile engine needs a model of Smile (" + MODEL_ZIP + ")");
+            }
+            BinaryModel model = BinaryModel.read(ByteBuffer.wrap(bytes));
+            model.checkCompatible(featureSchema, classes);
+            return new LoadedModel(engineType.create(model.getForest(), model.getTreeWeights()), null,
+                    LoadedModel.version(model), file.toString());
+        }
+
+        RandomForest forest;
+        try (InputStream modelStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            forest = ModelConverter.readForest(modelStream);
+        }
+        // checked by the conversion: the number of features and of classes of the model
+        BinaryModel model = BinaryModel.fromForest(forest, featureSchema, classes);
+        ForestEngine engine = engineType == ForestEngineType.SMILE
+                ? engineType.create(forest)
+                : engineType.create(model.getForest(), model.getTreeWeights());
+        return new LoadedModel(engine, engineType == ForestEngineType.SMILE ? forest : null,
+                LoadedModel.version(model), file.toString());
+    }
+
+    // predictions of random vectors, one by one and in a batch, which must give some known classes
+    private void warmUp(ForestEngine engine) {
+        int nbFeatures = FeatureSchema.getInstance().size();
+        int nbClasses = ClassExtractor.classMap.size();
+        Random random = new Random(42);
+        FeatureMatrix features = new FeatureMatrix(WARMUP_VECTORS, nbFeatures);
+        for (int row = 0; row < WARMUP_VECTORS; row++) {
+            FeatureVector featureVector = new FeatureVector(nbFeatures);
+            for (int i = 0; i < 1 + random.nextInt(8); i++) {
+                featureVector.set(random.nextInt(nbFeatures));
+            }
+            features.setRow(row, featureVector);
+            checkPrediction(engine.predict(featureVector), nbClasses);
+        }
+        for (int prediction : engine.predict(features)) {
+            checkPrediction(prediction, nbClasses);
+        }
+    }
+
+    private static void checkPrediction(int prediction, int nbClasses) {
+        if (prediction < 0 || prediction >= nbClasses) {
+            throw new NerdKidException("The model predicts an unknown class: " + prediction);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.nerd.kid.model;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import org.nerd.kid.data.WikidataElementInfos;
+import org.nerd.kid.service.NerdKidMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+collector of the single predictions asked at the same time (e.g. by the requests of the web service), predicted together
+by WikidataNERPredictor.predictBatch: one batched fetch of the elements and one evaluation of the forest for all of them
+
+a batch is sent 'window' after its first prediction was asked, or as soon as it has 'maxBatchSize' predictions;
+the batches are predicted by the executor given, so that the next one is collected meanwhile
+
+the number of predictions by batch and the wait of the predictions before their batch is sent (in microseconds)
+are reported by the histograms 'org.nerd.kid.model.PredictionBatcher.batch-size' and '...queue-wait'
+* */
+
+public class PredictionBatcher implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PredictionBatcher.class);
+
+    // wait of the collector for a first prediction, before checking whether it is closed
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final WikidataNERPredictor predictor;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Executor batchExecutor;
+    private final BlockingQueue<PendingPrediction> queue = new LinkedBlockingQueue<>();
+    private final Thread collector;
+    private volatile boolean running = true;
+
+    private final Histogram batchSizes;
+    private final Histogram queueWaits;
+
+    public PredictionBatcher(WikidataNERPredictor predictor, long window, TimeUnit unit, int maxBatchSize, Executor batchExecutor) {
+        this.predictor = predictor;
+        this.windowNanos = unit.toNanos(window);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchExecutor = batchExecutor;
+        MetricRegistry registry = NerdKidMetrics.registry();
+        this.batchSizes = registry.histogram(MetricRegistry.name(PredictionBatcher.class, "batch-size"));
+        this.queueWaits = registry.histogram(MetricRegistry.name(PredictionBatcher.class, "queue-wait"));
+        this.collector = new Thread(this::collect, "prediction-batcher");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    // the prediction of the Wikidata Id (without scores), once its batch is predicted
+    public CompletableFuture<WikidataElementInfos> predict(String wikidataId) {
+        if (!running) {
+            return predictor.predictAsync(wikidataId);
+        }
+        PendingPrediction pendingPrediction = new PendingPrediction(wikidataId);
+        queue.add(pendingPrediction);
+        // closed meanwhile: the queue may have been drained already, the prediction is taken back if nobody took it
+        if (!running && queue.remove(pendingPrediction)) {
+            return predictor.predictAsync(wikidataId);
+        }
+        return pendingPrediction.future;
+    }
+
+    private void collect() {
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPrediction first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingPrediction> batch = new ArrayList<>();
+                batch.add(first);
+                long deadline = first.askedAt + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingPrediction next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void send(List<PendingPrediction> batch) {
+        try {
+            batchExecutor.execute(() -> predictBatch(batch));
+        } catch (RuntimeException e) {
+            // the executor is stopped
+            predictBatch(batch);
+        }
+    }
+
+    private void predictBatch(List<PendingPrediction> batch) {
+        long now = System.nanoTime();
+        batchSizes.update(batch.size());
+        String[] wikidataIds = new String[batch.size()];
+        for (int i = 0; i < wikidataIds.length; i++) {
+            PendingPrediction pendingPrediction = batch.get(i);
+            queueWaits.update(TimeUnit.NANOSECONDS.toMicros(now - pendingPrediction.askedAt));
+            wikidataIds[i] = pendingPrediction.wikidataId;
+        }
+        try {
+            List<WikidataElementInfos> predictions = predictor.predictBatch(wikidataIds);
+            for (int i = 0; i < wikidataIds.length; i++) {
+                batch.get(i).future.complete(predictions.get(i));
+            }
+        } catch (RuntimeException e) {
+            LOGGER.info("Some errors encountered when predicting a batch of " + wikidataIds.length + " Wikidata Ids", e);
+            for (PendingPrediction pendingPrediction : batch) {
+                pendingPrediction.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    // the predictions already asked are sent, the next ones aren't batched any more
+    @Override
+    public void close() {
+        running = false;
+        try {
+            collector.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingPrediction> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            predictBatch(rest);
+        }
+    }
+
+    private static class PendingPrediction {
+        private final String wikidataId;
+        private final long askedAt = System.nanoTime();
+        private final CompletableFuture<WikidataElementInfos> future = new CompletableFuture<>();
+
+        private PendingPrediction(String wikidataId) {
+            this.wikidataId = wikidataId;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.nerd.kid.model;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.nerd.kid.data.WikidataElementInfos;
+import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.service.SingleFlight;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+read-through cache of the predictions of Wikidata Ids, in front of WikidataNERPredictor.predict(String)
+
+  - the key is the Wikidata Id, the number of top classes asked (0 without scores) and the version of the model which
+    made the prediction: the predictions of a previous model are never given, and the cache is cleared when the model is replaced
+  - bounded by a number of predictions and by an estimate of their size in bytes, evicted by the least recently used
+  - expired after 'expireAfterWrite'; after 'refreshAfterWrite' the prediction is still given, and predicted again
+    in the background (the previous one is kept if the new prediction fails)
+  - the predictions without any class (the features couldn't be collected) aren't kept, nor the ones made by another
+    model than the one of the key (replaced meanwhile)
+  - a missing prediction asked by several requests at the same time is predicted once (loaded once by the cache,
+    shared in flight for the asynchronous predictions, counter '...coalesced')
+
+the hits, misses, evictions and size are reported by the gauges 'org.nerd.kid.model.PredictionCache.*'
+* */
+
+public class PredictionCache {
+    // bytes of a prediction without its strings and its scores (objects, references, feature vector)
+    private static final int BASE_WEIGHT = 256;
+
+    private final WikidataNERPredictor predictor;
+    private final ModelHolder modelHolder;
+    private final LoadingCache<String, WikidataElementInfos> cache;
+    // the same prediction asked by several requests at the same time is predicted once
+    private final SingleFlight<String, WikidataElementInfos> predictions;
+    // the asynchronous predictions without scores go through it if there is one
+    private PredictionBatcher batcher;
+    private final AtomicLong refreshFailures = new AtomicLong();
+
+    public PredictionCache(WikidataNERPredictor predictor, long maxEntries, long maxBytes,
+                           long expireAfterWrite, long refreshAfterWrite, TimeUnit unit, Executor refreshExecutor) {
+        this.predictor = predictor;
+        this.modelHolder = predictor.getModelHolder();
+        /* the bytes are the weight; as a weight can't be bounded together with a number of entries, every prediction
+        weighs at least maxBytes / maxEntries, so that there are never more than maxEntries predictions
+        */
+        long minWeight = Math.max(1, maxBytes / Math.max(1, maxEntries));
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, WikidataElementInfos infos) -> (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, weight(key, infos))))
+                .expireAfterWrite(expireAfterWrite, unit)
+                .refreshAfterWrite(refreshAfterWrite, unit)
+                .recordStats()
+                .build(new CacheLoader<String, WikidataElementInfos>() {
+                    @Override
+                    public WikidataElementInfos load(String key) {
+                        return predictKey(key);
+                    }
+
+                    @Override
+                    public ListenableFuture<WikidataElementInfos> reload(String key, WikidataElementInfos oldValue) {
+                        ListenableFutureTask<WikidataElementInfos> task = ListenableFutureTask.create(() -> {
+                            try {
+                                return predictKey(key);
+                            } catch (RuntimeException e) {
+                                refreshFailures.incrementAndGet();
+                                throw e;
+                            }
+                        });
+                        refreshExecutor.execute(task);
+                        return task;
+                    }
+                });
+        this.predictions = new SingleFlight<>(MetricRegistry.name(PredictionCache.class, "coalesced"));
+        modelHolder.addListener(model -> cache.invalidateAll());
+    }
+
+    // gauges of the statistics of the cache, the ones of the last cache registered are reported
+    public void registerMetrics(MetricRegistry registry) {
+        register(registry, "hits", () -> cache.stats().hitCount());
+        register(registry, "misses", () -> cache.stats().missCount());
+        register(registry, "hit-rate", () -> cache.stats().hitRate());
+        register(registry, "evictions", () -> cache.stats().evictionCount());
+        register(registry, "refresh-failures", refreshFailures::get);
+        register(registry, "size", cache::size);
+    }
+
+    private static void register(MetricRegistry registry, String name, Gauge<?> gauge) {
+        String metricName = MetricRegistry.name(PredictionCache.class, name);
+        registry.remove(metricName);
+        registry.register(metricName, gauge);
+    }
+
+    public void setBatcher(PredictionBatcher batcher) {
+        this.batcher = batcher;
+    }
+
+    public WikidataElementInfos predict(String wikidataId) {
+        return predict(wikidataId, 0);
+    }
+
+    // the prediction of the cache if there is one, otherwise the prediction of the predictor (kept if it has a class)
+    public WikidataElementInfos predict(String wikidataId, int topK) {
+        String key = key(wikidataId, topK);
+        try {
+            return cache.get(key, () -> predictKey(key));
+        } catch (UncheckedExecutionException | ExecutionException e) {
+            // the prediction isn't kept, it is given anyway
+            if (e.getCause() instanceof UncachedPrediction) {
+                return ((UncachedPrediction) e.getCause()).wikidataElementInfos;
+            }
+            throw new NerdKidException("Cannot predict the Wikidata Id \"" + wikidataId + "\"", e.getCause());
+        }
+    }
+
+    /* the same without blocking the caller, the prediction of the cache being given at once;
+    the requests of a prediction in flight share it, and the predictions without scores are batched with the ones asked meanwhile if there is a batcher
+    */
+    public CompletableFuture<WikidataElementInfos> predictAsync(String wikidataId, int topK) {
+        String key = key(wikidataId, topK);
+        WikidataElementInfos cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return predictions.execute(key, () -> {
+            CompletableFuture<WikidataElementInfos> prediction = batcher != null && topK <= 0
+                    ? batcher.predict(wikidataId)
+                    : predictor.predictAsync(wikidataId, topK);
+            return prediction.thenApply(wikidataElementInfos -> {
+                if (wikidataElementInfos.getPredictedClass() != null) {
+                    // under the version of the model which made the prediction
+                    cache.put(key(wikidataElementInfos, key), wikidataElementInfos);
+                }
+                return wikidataElementInfos;
+            });
+        });
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private String key(String wikidataId, int topK) {
+        LoadedModel model = modelHolder.current();
+        return (model != null ? model.getVersion() : "") + ':' + Math.max(0, topK) + ':' + wikidataId;
+    }
+
+    // the key of a prediction with the version of the model which made it, the key asked if no model was needed (OTHER)
+    private static String key(WikidataElementInfos wikidataElementInfos, String key) {
+        String version = wikidataElementInfos.getModelVersion();
+        return version == null ? key : version + key.substring(key.indexOf(':'));
+    }
+
+    /* prediction of a key (load or refresh): the Id and the number of classes of the key; a prediction without class
+    or made by another model than the one of the key isn't kept (the previous one is kept on a refresh)
+    */
+    private WikidataElementInfos predictKey(String key) {
+        int start = key.indexOf(':');
+        int end = key.indexOf(':', start + 1);
+        String wikidataId = key.substring(end + 1);
+        WikidataElementInfos wikidataElementInfos = predictor.predict(wikidataId, Integer.parseInt(key.substring(start + 1, end)));
+        if (wikidataElementInfos.getPredictedClass() == null || !key(wikidataElementInfos, key).equals(key)) {
+            throw new UncachedPrediction(wikidataElementInfos);
+        }
+        return wikidataElementInfos;
+    }
+
+    // estimate of the bytes of a prediction: its strings (2 bytes by char) and its scores
+    private static long weight(String key, WikidataElementInfos infos) {
+        long weight = BASE_WEIGHT + 2L * key.length();
+        weight += 2L * length(infos.getWikidataId()) + 2L * length(infos.getLabel()) + 2L * length(infos.getPredictedClass());
+        if (infos.getFeatureVector() != null) {
+            weight += 8L * infos.getFeatureVector().words().length;
+        }
+        Map<String, Double> classDistribution = infos.getClassDistribution();
+        if (classDistribution != null) {
+            weight += 64L * classDistribution.size();
+        }
+        List<String> topClasses = infos.getTopClasses();
+        if (topClasses != null) {
+            weight += 8L * topClasses.size();
+        }
+        return weight;
+    }
+
+    private static int length(String string) {
+        return string != null ? string.length() : 0;
+    }
+
+    // a prediction which isn't kept by the cache
+    private static class UncachedPrediction extends NerdKidException {
+        private final WikidataElementInfos wikidataElementInfos;
+
+        UncachedPrediction(WikidataElementInfos wikidataElementInfos) {
+            super("The prediction of the Wikidata Id \"" + wikidataElementInfos.getWikidataId() + "\" isn't kept");
+            this.wikidataElementInfos = wikidataElementInfos;
+        }
+    }
+}
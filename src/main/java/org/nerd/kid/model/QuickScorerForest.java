@@ -0,0 +1,245 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+
+import java.util.Arrays;
+
+/*
+inference engine evaluating the forest with bitvectors in the way of QuickScorer (Lucchese et al., SIGIR 2015)
+
+The leaves of each tree are numbered from left to right (the child followed when the feature is 0 being on the left),
+every tree has a bitvector of its leaves, all set at the beginning. A node whose feature is 1 sends the element to the right,
+so the leaves of its left subtree can't be reached anymore: they are cleared with a precomputed mask.
+Only the features set are visited, which suits the sparse binary features of the entities.
+The exit leaf of a tree is then the leftmost leaf still set, found with a count of trailing zeros, without any branch per node.
+* */
+
+public final class QuickScorerForest implements ForestEngine {
+    private final int numberOfFeatures;
+    private final int numberOfClasses;
+    private final int nbTrees;
+
+    // words of the bitvector of the tree t: [wordOffset[t], wordOffset[t + 1])
+    private final int[] wordOffset;
+    // class of the leaves of the tree t: leafClass[leafOffset[t] + leaf]
+    private final int[] leafOffset;
+    private final int[] leafClass;
+    // bitvectors with all the leaves set, copied before each evaluation
+    private final long[] initialLeaves;
+
+    // masks applied when the feature f is set: maskWord[c], mask[c] for c in [featureOffset[f], featureOffset[f + 1])
+    private final int[] featureOffset;
+    private final int[] maskWord;
+    private final long[] mask;
+
+    private final ThreadLocal<long[]> leavesBuffer;
+    private final ThreadLocal<int[]> votesBuffer;
+
+    private QuickScorerForest(int numberOfFeatures, int numberOfClasses, int[] wordOffset, int[] leafOffset, int[] leafClass,
+                              long[] initialLeaves, int[] featureOffset, int[] maskWord, long[] mask) {
+        this.numberOfFeatures = numberOfFeatures;
+        this.numberOfClasses = numberOfClasses;
+        this.nbTrees = leafOffset.length - 1;
+        this.wordOffset = wordOffset;
+        this.leafOffset = leafOffset;
+        this.leafClass = leafClass;
+        this.initialLeaves = initialLeaves;
+        this.featureOffset = featureOffset;
+        this.maskWord = maskWord;
+        this.mask = mask;
+        this.leavesBuffer = ThreadLocal.withInitial(() -> new long[initialLeaves.length]);
+        this.votesBuffer = ThreadLocal.withInitial(() -> new int[numberOfClasses]);
+    }
+
+    public static QuickScorerForest build(FlatForest forest) {
+        return new Builder(forest).build();
+    }
+
+    @Override
+    public int predict(FeatureVector features) {
+        return predict(features, votesBuffer.get());
+    }
+
+    @Override
+    public int predict(FeatureVector features, int[] votes) {
+        checkFeatures(features.size());
+        return predict(features.words(), 0, features.words().length, votes);
+    }
+
+    // the masks clear the leaves in a buffer of the thread, the rows of a batch are evaluated one after the other
+    @Override
+    public void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        checkFeatures(features.size());
+        final int[] votes = votesBuffer.get();
+        for (int row = from; row < to; row++) {
+            predictions[row] = predict(features.words(), features.offset(row), features.wordsPerRow(), votes);
+        }
+    }
+
+    // prediction of the bitset of the words [offset, offset + length)
+    private int predict(long[] words, int offset, int length, int[] votes) {
+        final long[] leaves = leavesBuffer.get();
+        System.arraycopy(initialLeaves, 0, leaves, 0, leaves.length);
+
+        // clear the leaves which can't be reached, only the features set are visited
+        for (int i = 0; i < length; i++) {
+            long word = words[offset + i];
+            while (word != 0) {
+                int f = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (f >= numberOfFeatures) {
+                    break;
+                }
+                for (int c = featureOffset[f]; c < featureOffset[f + 1]; c++) {
+                    leaves[maskWord[c]] &= mask[c];
+                }
+                word &= word - 1;
+            }
+        }
+
+        Arrays.fill(votes, 0);
+        for (int t = 0; t < nbTrees; t++) {
+            // the exit leaf is the leftmost leaf still set
+            int w = wordOffset[t];
+            while (leaves[w] == 0) {
+                w++;
+            }
+            int leaf = ((w - wordOffset[t]) << 6) + Long.numberOfTrailingZeros(leaves[w]);
+            votes[leafClass[leafOffset[t] + leaf]]++;
+        }
+        return FlatForest.whichMax(votes);
+    }
+
+    private void checkFeatures(int size) {
+        if (size < numberOfFeatures) {
+            throw new IllegalArgumentException("The model expects " + numberOfFeatures + " features, got " + size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return nbTrees;
+    }
+
+    @Override
+    public int numberOfClasses() {
+        return numberOfClasses;
+    }
+
+    // builder numbering the leaves of each tree and collecting the masks of the nodes by feature
+    private static class Builder {
+        private final FlatForest forest;
+        private final int nbTrees;
+
+        private final int[] wordOffset;
+        private final int[] leafOffset;
+        private int[] leafClass = new int[1024];
+        private int nbLeaves = 0;
+        // first leaf of the tree being numbered
+        private int treeFirstLeaf = 0;
+
+        // masks of the nodes, before being grouped by feature
+        private int[] nodeFeature = new int[1024];
+        private int[] nodeWord = new int[1024];
+        private long[] nodeMask = new long[1024];
+        private int nbMasks = 0;
+
+        Builder(FlatForest forest) {
+            this.forest = forest;
+            this.nbTrees = forest.size();
+            this.wordOffset = new int[nbTrees + 1];
+            this.leafOffset = new int[nbTrees + 1];
+        }
+
+        QuickScorerForest build() {
+            for (int t = 0; t < nbTrees; t++) {
+                leafOffset[t] = nbLeaves;
+                treeFirstLeaf = nbLeaves;
+                int firstMask = nbMasks;
+                numberLeaves(forest.root(t));
+                int treeLeaves = nbLeaves - leafOffset[t];
+                wordOffset[t + 1] = wordOffset[t] + FeatureVector.wordCount(treeLeaves);
+                // the masks have been computed with the word relative to the tree
+                for (int c = firstMask; c < nbMasks; c++) {
+                    nodeWord[c] += wordOffset[t];
+                }
+            }
+            leafOffset[nbTrees] = nbLeaves;
+
+            long[] initialLeaves = new long[wordOffset[nbTrees]];
+            for (int t = 0; t < nbTrees; t++) {
+                setRange(initialLeaves, wordOffset[t], 0, leafOffset[t + 1] - leafOffset[t]);
+            }
+
+            // group the masks by feature
+            int nbFeatures = forest.numberOfFeatures();
+            int[] featureOffset = new int[nbFeatures + 1];
+            for (int c = 0; c < nbMasks; c++) {
+                featureOffset[nodeFeature[c] + 1]++;
+            }
+            for (int f = 0; f < nbFeatures; f++) {
+                featureOffset[f + 1] += featureOffset[f];
+            }
+            int[] position = Arrays.copyOf(featureOffset, nbFeatures);
+            int[] maskWord = new int[nbMasks];
+            long[] mask = new long[nbMasks];
+            for (int c = 0; c < nbMasks; c++) {
+                int p = position[nodeFeature[c]]++;
+                maskWord[p] = nodeWord[c];
+                mask[p] = nodeMask[c];
+            }
+
+            return new QuickScorerForest(nbFeatures, forest.numberOfClasses(), wordOffset, leafOffset,
+                    Arrays.copyOf(leafClass, nbLeaves), initialLeaves, featureOffset, maskWord, mask);
+        }
+
+        // depth-first numbering of the leaves from left to right, collecting the masks of the nodes on the way
+        private void numberLeaves(int node) {
+            if (FlatForest.isLeaf(node)) {
+                if (nbLeaves == leafClass.length) {
+                    leafClass = Arrays.copyOf(leafClass, leafClass.length * 2);
+                }
+                leafClass[nbLeaves++] = FlatForest.leafClass(node);
+                return;
+            }
+            int first = nbLeaves - treeFirstLeaf;
+            numberLeaves(forest.childClear(node));
+            int last = nbLeaves - treeFirstLeaf;
+            numberLeaves(forest.childSet(node));
+
+            // the feature set sends the element to the right: the leaves [first, last) of the left subtree are cleared
+            addMasks(forest.feature(node), first, last);
+        }
+
+        private void addMasks(int feature, int first, int last) {
+            for (int w = first >>> 6; w <= (last - 1) >>> 6; w++) {
+                int from = Math.max(first, w << 6) - (w << 6);
+                int to = Math.min(last, (w + 1) << 6) - (w << 6);
+                long cleared = rangeMask(from, to);
+                if (nbMasks == nodeMask.length) {
+                    nodeFeature = Arrays.copyOf(nodeFeature, nbMasks * 2);
+                    nodeWord = Arrays.copyOf(nodeWord, nbMasks * 2);
+                    nodeMask = Arrays.copyOf(nodeMask, nbMasks * 2);
+                }
+                nodeFeature[nbMasks] = feature;
+                nodeWord[nbMasks] = w;
+                nodeMask[nbMasks] = ~cleared;
+                nbMasks++;
+            }
+        }
+
+        // bits [from, to) of a word, with 0 <= from < to <= 64
+        private static long rangeMask(int from, int to) {
+            long upTo = to == 64 ? -1L : (1L << to) - 1;
+            return upTo & (-1L << from);
+        }
+
+        private static void setRange(long[] words, int offset, int from, int to) {
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+                int start = Math.max(from, w << 6) - (w << 6);
+                int end = Math.min(to, (w + 1) << 6) - (w << 6);
+                words[offset + w] |= rangeMask(start, end);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smile.classification.RandomForest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPInputStream;
+
+/*
+models loaded once per JVM and shared by every predictor, the web resources as well as the command line tools
+
+  - the binary model: the one given by the system property 'nerdkid.model' (mapped in memory), or the bundled 'model.bin';
+    a model given which can't be read or doesn't match the features and the classes stops the loading
+  - the model of Smile: the bundled 'model.zip', only loaded if the Smile engine is used (or if there isn't any binary model)
+  - the inference engines, built once by type of engine from these models
+the models and the engines are immutable, they can be used by several threads
+* */
+
+public final class SharedModels {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedModels.class);
+
+    // system property of a binary model file used instead of the bundled model (-Dnerdkid.model=/path/model.bin)
+    public static final String MODEL_PROPERTY = "nerdkid.model";
+
+    private static final ConcurrentMap<ForestEngineType, LoadedModel> MODELS = new ConcurrentHashMap<>();
+
+    private SharedModels() {
+    }
+
+    // engine of the shared model, null if the model can't be loaded
+    public static ForestEngine engine(ForestEngineType engineType) {
+        LoadedModel model = model(engineType);
+        return model != null ? model.getEngine() : null;
+    }
+
+    // shared model with its engine and its version, null if the model can't be loaded
+    public static LoadedModel model(ForestEngineType engineType) {
+        return MODELS.computeIfAbsent(engineType, SharedModels::createModel);
+    }
+
+    // bundled model of Smile, null if it can't be loaded
+    public static RandomForest smileForest() {
+        return SmileForestHolder.FOREST;
+    }
+
+    // binary model, null if there isn't any usable
+    public static BinaryModel binaryModel() {
+        return BinaryModelHolder.MODEL;
+    }
+
+    private static LoadedModel createModel(ForestEngineType engineType) {
+        // the compiled engines use the binary model as it is, only the Smile engine needs the model of Smile
+        BinaryModel model = engineType != ForestEngineType.SMILE ? binaryModel() : null;
+        if (model != null) {
+            return new LoadedModel(engineType.create(model.getForest(), model.getTreeWeights()), null,
+                    LoadedModel.version(model), BinaryModelHolder.SOURCE);
+        }
+        RandomForest forest = smileForest();
+        if (forest == null) {
+            return null;
+        }
+        String version = LoadedModel.version(BinaryModel.fromForest(forest, FeatureSchema.getInstance(), ClassExtractor.classMap));
+        return new LoadedModel(engineType.create(forest), forest, version, SmileForestHolder.SOURCE);
+    }
+
+    private static class SmileForestHolder {
+        private static final String SOURCE = "model.zip";
+        private static final RandomForest FOREST = load();
+
+        private static RandomForest load() {
+            String pathModelZip = SOURCE;
+            try (InputStream modelStream = new GZIPInputStream(SharedModels.class.getResourceAsStream(pathModelZip))) {
+                long start = System.currentTimeMillis();
+                RandomForest forest = ModelConverter.readForest(modelStream);
+                LOGGER.info("Model \"" + pathModelZip + "\" loaded in " + (System.currentTimeMillis() - start) + " ms");
+                return forest;
+            } catch (Exception e) {
+                LOGGER.info("Some errors encountered when loading a model in \"" + pathModelZip + "\"", e);
+                return null;
+            }
+        }
+    }
+
+    private static class BinaryModelHolder {
+        private static final String SOURCE = System.getProperty(MODEL_PROPERTY, "model.bin");
+        private static final BinaryModel MODEL = loadBinaryModel(System.getProperty(MODEL_PROPERTY));
+    }
+
+    /* the binary model of the file given (-Dnerdkid.model), or the bundled model.bin if null; only a bundled model which
+    is missing or can't be used falls back to the model of Smile (null), a model given which can't be used fails loudly
+    */
+    static BinaryModel loadBinaryModel(String pathModelBin) {
+        String source = pathModelBin != null ? pathModelBin : "model.bin";
+        try {
+            long start = System.currentTimeMillis();
+            BinaryModel model;
+            if (pathModelBin != null) {
+                model = BinaryModel.read(Paths.get(pathModelBin));
+            } else {
+                InputStream modelStream = SharedModels.class.getResourceAsStream(source);
+                if (modelStream == null) {
+                    return null;
+                }
+                try (InputStream stream = modelStream) {
+                    model = BinaryModel.read(stream);
+                }
+            }
+            model.checkCompatible(FeatureSchema.getInstance(), ClassExtractor.classMap);
+            LOGGER.info("Model \"" + source + "\" loaded in " + (System.currentTimeMillis() - start) + " ms");
+            return model;
+        } catch (IOException | RuntimeException e) {
+            if (pathModelBin != null) {
+                throw new NerdKidException("The model \"" + pathModelBin + "\" given by -D" + MODEL_PROPERTY + " can't be used.", e);
+            }
+            LOGGER.info("Some errors encountered when loading a model in \"" + source + "\"", e);
+            return null;
+        }
+    }
+}
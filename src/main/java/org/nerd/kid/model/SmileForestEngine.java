@@ -0,0 +1,101 @@
+package org.nerd.kid.model;
+
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+import smile.classification.DecisionTree;
+import smile.classification.RandomForest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+inference engine delegating to the Smile model, the binary features are converted into a dense array reused by the thread
+
+a batch is densified by blocks of rows, every tree being evaluated across the rows of a block before the next one, so that
+the nodes of a tree stay in the caches while the rows go through it
+* */
+
+public class SmileForestEngine implements ForestEngine {
+    private final RandomForest forest;
+    // trees of the model, Smile only gives the class predicted by the majority of them
+    private final List<DecisionTree> trees;
+
+    private final int numberOfClasses;
+
+    // dense buffer for the Smile boundary, one per thread
+    private final ThreadLocal<double[]> buffer = new ThreadLocal<>();
+    // dense rows of a block of a batch and their votes, one per thread
+    private final ThreadLocal<double[][]> blockBuffer = new ThreadLocal<>();
+    private final ThreadLocal<int[]> blockVotes;
+
+    public SmileForestEngine(RandomForest forest) {
+        this.forest = forest;
+        this.trees = ForestCompiler.trees(forest);
+        this.numberOfClasses = ForestCompiler.numberOfClasses(forest);
+        this.blockVotes = ThreadLocal.withInitial(() -> new int[ForestBatchTask.THRESHOLD * numberOfClasses]);
+    }
+
+    public RandomForest getForest() {
+        return forest;
+    }
+
+    @Override
+    public int predict(FeatureVector features) {
+        // Smile can only predict with the type of Array in double
+        double[] rawFeatures = features.toArray(buffer.get());
+        buffer.set(rawFeatures);
+        return forest.predict(rawFeatures);
+    }
+
+    @Override
+    public int predict(FeatureVector features, int[] votes) {
+        double[] rawFeatures = features.toArray(buffer.get());
+        buffer.set(rawFeatures);
+        Arrays.fill(votes, 0);
+        for (DecisionTree tree : trees) {
+            votes[tree.predict(rawFeatures)]++;
+        }
+        return FlatForest.whichMax(votes);
+    }
+
+    // the rows [from, to) by blocks of ForestBatchTask.THRESHOLD rows, tree by tree across the rows of a block
+    @Override
+    public void predict(FeatureMatrix features, int from, int to, int[] predictions) {
+        final double[][] block = blockBuffer(features.size());
+        final int[] votes = blockVotes.get();
+        for (int start = from; start < to; start += block.length) {
+            final int rows = Math.min(block.length, to - start);
+            for (int row = 0; row < rows; row++) {
+                features.toArray(start + row, block[row]);
+            }
+            Arrays.fill(votes, 0, rows * numberOfClasses, 0);
+            for (DecisionTree tree : trees) {
+                for (int row = 0; row < rows; row++) {
+                    votes[row * numberOfClasses + tree.predict(block[row])]++;
+                }
+            }
+            for (int row = 0; row < rows; row++) {
+                predictions[start + row] = FlatForest.whichMax(votes, row * numberOfClasses, numberOfClasses);
+            }
+        }
+    }
+
+    private double[][] blockBuffer(int size) {
+        double[][] block = blockBuffer.get();
+        if (block == null || block[0].length != size) {
+            block = new double[ForestBatchTask.THRESHOLD][size];
+            blockBuffer.set(block);
+        }
+        return block;
+    }
+
+    @Override
+    public int size() {
+        return forest.size();
+    }
+
+    @Override
+    public int numberOfClasses() {
+        return numberOfClasses;
+    }
+}
@@ -1,14 +1,14 @@
 package org.nerd.kid.model;
 
 import au.com.bytecode.opencsv.CSVWriter;
-import com.thoughtworks.xstream.XStream;
-import com.thoughtworks.xstream.security.AnyTypePermission;
-import org.apache.commons.lang3.ArrayUtils;
 import org.nerd.kid.arff.TrainerGenerator;
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
 import org.nerd.kid.data.WikidataElement;
 import org.nerd.kid.data.WikidataElementInfos;
 import org.nerd.kid.extractor.ClassExtractor;
 import org.nerd.kid.extractor.FeatureDataExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
 import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
 import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
 import org.nerd.kid.service.NerdKidPaths;
@@ -20,28 +20,23 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.InputStream;
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
 
 public class WikidataNERPredictor {
     private static final Logger LOGGER = LoggerFactory.getLogger(WikidataNERPredictor.class);
 
     private CSVWriter csvWriter = null;
-    private XStream streamer = new XStream();
-    private RandomForest forest = null;
+    // inference engine evaluating the model, the model being held by the holder (it can be replaced at any time)
+    private ForestEngineType engineType = ForestEngineType.SMILE;
+    private ModelHolder modelHolder = null;
     private WikidataFetcherWrapper wrapper = null;
-    // feature data extractor doesn't depend on any wrapper, accepting the wikidata element object
-    private FeatureDataExtractor featureDataExtractor = new FeatureDataExtractor();
-    private ModelBuilder modelBuilder = new ModelBuilder();
+    // feature data extractor of the wrapper, shared by the predictions (it doesn't keep any state)
+    private FeatureDataExtractor featureDataExtractor = null;
 
+    // the model is loaded once per JVM and shared by every predictor of the same engine
     public void init() {
-        String pathModelZip = "model.zip";
-        try {
-            XStream.setupDefaultSecurity(streamer);
-            streamer.addPermission(AnyTypePermission.ANY);
-            InputStream modelStream = modelBuilder.readZipFile(this.getClass().getResourceAsStream(pathModelZip));
-            loadModel(modelStream);
-        } catch (Exception e) {
-            LOGGER.info("Some errors encountered when loading a model in \""+ pathModelZip + "\"", e);
+        if (modelHolder == null) {
+            modelHolder = ModelHolder.shared(engineType);
         }
     }
 
@@ -64,31 +59,75 @@ public class WikidataNERPredictor {
         }
     }*/
 
+    // model of Smile of the current model, only for the Smile engine
     public RandomForest getForest() {
-        return forest;
+        LoadedModel model = modelHolder.current();
+        return model != null ? model.getForest() : null;
     }
 
     public void setForest(RandomForest forest) {
-        this.forest = forest;
+        BinaryModel model = BinaryModel.fromForest(forest, featureDataExtractor.getFeatureSchema(), ClassExtractor.classMap);
+        modelHolder.swap(new LoadedModel(engineType.create(forest), forest, LoadedModel.version(model), "forest"));
+    }
+
+    // binary model, checked against the features and the classes of the predictor; there isn't any model of Smile then
+    public void setModel(BinaryModel model) {
+        model.checkCompatible(featureDataExtractor.getFeatureSchema(), ClassExtractor.classMap);
+        modelHolder.swap(new LoadedModel(engineType.create(model.getForest(), model.getTreeWeights()), null,
+                LoadedModel.version(model), "binary model"));
+    }
+
+    public ForestEngine getEngine() {
+        return modelHolder.engine();
+    }
+
+    public ModelHolder getModelHolder() {
+        return modelHolder;
+    }
+
+    public ForestEngineType getEngineType() {
+        return engineType;
     }
 
     // loading model in Inputstream format --> after decompressing with GzipInputStream
     public void loadModel(InputStream modelStream) {
         try {
-            forest = (RandomForest) streamer.fromXML(modelStream);
+            setForest(ModelConverter.readForest(modelStream));
         } catch (Exception e) {
             LOGGER.info("Some errors encountered when loading a stream of model in \""+ modelStream + "\"", e);
         }
     }
 
-    // to initialize the wrapper
+    // to initialize the wrapper, the inference engine is the Smile model unless another one is set with -Dnerdkid.engine
     public WikidataNERPredictor(WikidataFetcherWrapper wrapper) {
+        this(wrapper, ForestEngineType.fromSystemProperty(ForestEngineType.SMILE));
+    }
+
+    // to initialize the wrapper and the inference engine evaluating the model
+    public WikidataNERPredictor(WikidataFetcherWrapper wrapper, ForestEngineType engineType) {
+        this.engineType = engineType;
+        this.wrapper = wrapper;
+        this.featureDataExtractor = new FeatureDataExtractor(wrapper);
         init();
+    }
+
+    // to initialize the wrapper and the holder of the model, which can be shared and reloaded (see ModelHolder)
+    public WikidataNERPredictor(WikidataFetcherWrapper wrapper, ModelHolder modelHolder) {
+        this.engineType = modelHolder.getEngineType();
         this.wrapper = wrapper;
+        this.featureDataExtractor = new FeatureDataExtractor(wrapper);
+        this.modelHolder = modelHolder;
     }
 
     /* Method for accepting Wikidata element (id, label, properties-values) to be predicted*/
     public WikidataElementInfos predict(WikidataElement wikidataElement) {
+        return predict(wikidataElement, 0);
+    }
+
+    /* the same prediction with its scores: the distribution of the votes of the trees, the top k classes and the margin,
+    taken from the same pass over the trees (no scores if topK is 0)
+    */
+    public WikidataElementInfos predict(WikidataElement wikidataElement, int topK) {
 
         final WikidataElementInfos wikidataElementInfos = new WikidataElementInfos();
 
@@ -100,85 +139,41 @@ public class WikidataNERPredictor {
         List<String> propertiesNoValue = wikidataElement.getPropertiesNoValue();
         Map<String, List<String>> properties = wikidataElement.getProperties();
 
-        /* convert the properties information into the format binary 0-1 if they are found in the feature mapper files
-        since Smile can only predict with the type of Array in double, then the results are already converted into the proper type double[]
+        /* convert the properties information into the format binary 0-1 if they are found in the feature mapper files,
+        the features without value and with value are combined in a single pass over the statements of the element
         */
+        FeatureVector combinedFeatureWikidata = featureDataExtractor.getFeatureSchema().toFeatureVector(propertiesNoValue, properties);
 
-        Double[] resultGetFeatureWikidataPropertiesNoValue = featureDataExtractor.getFeatureWikidata(propertiesNoValue);
-        Double[] resultGetFeatureWikidataProperties = featureDataExtractor.getFeatureWikidata(properties);
-
-        // combine all the features collected (with and without values)
-        Double[] combinedFeatureWikidata = Stream.concat(Arrays.stream(resultGetFeatureWikidataPropertiesNoValue), Arrays.stream(resultGetFeatureWikidataProperties)).toArray(Double[]::new);
-
-        // if the features are only 0 for all, they don't need to be predicted; they are stated as OTHER
-        // OTHER might be entity but recognized as UNKNOWN class type or it might be not entity)
-        double sumOfFeatures = Arrays.stream(ArrayUtils.toPrimitive(combinedFeatureWikidata)).sum();
-        if (sumOfFeatures > 0) {
-            // predict the instance's class based on the features collected
-            int prediction = forest.predict(ArrayUtils.toPrimitive(combinedFeatureWikidata));
-
-            List<String> classMapper = ClassExtractor.classMap;
-            wikidataElementInfos.setPredictedClass(classMapper.get(prediction));
-        } else {
-            wikidataElementInfos.setPredictedClass("OTHER");
-        }
+        predictClass(wikidataElementInfos, combinedFeatureWikidata, topK);
         return wikidataElementInfos;
     }
 
     // get the input of wikidata element infos and retur the result of prediction
     public WikidataElementInfos predict(WikidataElementInfos wikiInfos) {
-        // get the feature of every instance
-        final int length = wikiInfos.getFeatureVector().length;
-        double[] rawFeatures = new double[length];
-        for (int i = 0; i < length; i++) {
-            rawFeatures[i] = ((double) wikiInfos.getFeatureVector()[i]);
-        }
-
-        // if the features are only 0 for all, they don't need to be predicted; they are stated as OTHER
-        double sumOfFeatures = Arrays.stream(rawFeatures).sum();
-        if (sumOfFeatures > 0) {
-            // predict the instance's class based on the features collected
-            int prediction = forest.predict(rawFeatures);
+        return predict(wikiInfos, 0);
+    }
 
-            List<String> classMapper = ClassExtractor.classMap;
-            wikiInfos.setPredictedClass(classMapper.get(prediction));
-        } else {
-            wikiInfos.setPredictedClass("OTHER");
-        }
-        //}
+    public WikidataElementInfos predict(WikidataElementInfos wikiInfos, int topK) {
+        predictClass(wikiInfos, wikiInfos.getFeatureVector(), topK);
         return wikiInfos;
     }
 
     // get the input of Wikidata Id and return the prediction result
     public WikidataElementInfos predict(String wikidataId) {
-        FeatureDataExtractor extractor;
+        return predict(wikidataId, 0);
+    }
+
+    // get the input of Wikidata Id and return the prediction result with its scores (no scores if topK is 0)
+    public WikidataElementInfos predict(String wikidataId, int topK) {
         WikidataElementInfos wikidataElementInfos = new WikidataElementInfos();
         try {
             // extract the characteristics of entities from Nerd
-            extractor = new FeatureDataExtractor(wrapper);
-            wikidataElementInfos = extractor.getFeatureWikidata(wikidataId);
+            wikidataElementInfos = featureDataExtractor.getFeatureWikidata(wikidataId);
 
-            // get the feature of every instance
-            final int length = wikidataElementInfos.getFeatureVector().length;
             // if there is at least 1 feature
             if (wikidataElementInfos.getFeatureVector() != null) {
-                double[] rawFeatures = new double[length];
-                for (int i = 0; i < length; i++) {
-                    // convert feature to double for Smile can predict it
-                    rawFeatures[i] = ((double) wikidataElementInfos.getFeatureVector()[i]);
-                }
-                // if the features are only 0 for all, they don't need to be predicted; they are stated as OTHER
-                double sumOfFeatures = Arrays.stream(rawFeatures).sum();
-                if (sumOfFeatures > 0) {
-                    // predict the instance's class based on the features collected
-                    int prediction = forest.predict(rawFeatures);
-
-                    List<String> classMapper = ClassExtractor.classMap;
-                    // set the class with the prediction result
-                    wikidataElementInfos.setPredictedClass(classMapper.get(prediction));
-                } else {
-                    wikidataElementInfos.setPredictedClass("OTHER");
-                }
+                // set the class with the prediction result
+                predictClass(wikidataElementInfos, wikidataElementInfos.getFeatureVector(), topK);
             }
         }catch (RuntimeException e){
             LOGGER.info("Some errors encountered when collecting some features for predicting a Wikidata Id \""+ wikidataId +"\"", e);
@@ -186,37 +181,174 @@ public class WikidataNERPredictor {
         return wikidataElementInfos;
     }
 
+    // the same without blocking the caller: the element is fetched asynchronously (see WikidataFetcherWrapper.getElementAsync)
+    public CompletableFuture<WikidataElementInfos> predictAsync(String wikidataId) {
+        return predictAsync(wikidataId, 0);
+    }
+
+    public CompletableFuture<WikidataElementInfos> predictAsync(String wikidataId, int topK) {
+        return featureDataExtractor.getFeatureWikidataAsync(wikidataId).thenApply(wikidataElementInfos -> {
+            try {
+                // if there is at least 1 feature
+                if (wikidataElementInfos.getFeatureVector() != null) {
+                    predictClass(wikidataElementInfos, wikidataElementInfos.getFeatureVector(), topK);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.info("Some errors encountered when predicting a Wikidata Id \"" + wikidataId + "\"", e);
+            }
+            return wikidataElementInfos;
+        });
+    }
+
+    /* Method for predicting a batch of Wikidata elements, the results are in the order of the elements
+    the features of the whole batch are collected first, then the forest is evaluated on them at once
+    */
+    public List<WikidataElementInfos> predictBatch(List<WikidataElement> wikidataElements) {
+        FeatureSchema featureSchema = featureDataExtractor.getFeatureSchema();
+        List<WikidataElementInfos> wikidataElementInfosList = new ArrayList<>(wikidataElements.size());
+        List<FeatureVector> features = new ArrayList<>(wikidataElements.size());
+        for (WikidataElement wikidataElement : wikidataElements) {
+            WikidataElementInfos wikidataElementInfos = new WikidataElementInfos();
+            wikidataElementInfos.setWikidataId(wikidataElement.getId());
+            wikidataElementInfos.setLabel(wikidataElement.getLabel());
+            wikidataElementInfosList.add(wikidataElementInfos);
+            features.add(featureSchema.toFeatureVector(wikidataElement.getPropertiesNoValue(), wikidataElement.getProperties()));
+        }
+        predictClasses(wikidataElementInfosList, features);
+        return wikidataElementInfosList;
+    }
+
+    /* get the input of a batch of Wikidata Ids and return the prediction results, in the order of the Ids;
+    the elements are fetched in batches (see WikidataFetcherWrapper.getElements)
+    */
+    public List<WikidataElementInfos> predictBatch(String... wikidataIds) {
+        // extract the characteristics of entities from Nerd
+        List<WikidataElementInfos> wikidataElementInfosList = featureDataExtractor.getFeaturesWikidata(Arrays.asList(wikidataIds));
+        List<FeatureVector> features = new ArrayList<>(wikidataIds.length);
+        for (WikidataElementInfos wikidataElementInfos : wikidataElementInfosList) {
+            features.add(wikidataElementInfos.getFeatureVector());
+        }
+        predictClasses(wikidataElementInfosList, features);
+        return wikidataElementInfosList;
+    }
+
+    /* the elements without any feature are stated as OTHER in bulk, the others are put in a single matrix predicted at once;
+    the class of the elements whose features couldn't be collected (null) isn't set, as for a single prediction
+    */
+    private void predictClasses(List<WikidataElementInfos> wikidataElementInfosList, List<FeatureVector> features) {
+        int nbRows = 0;
+        for (FeatureVector featureVector : features) {
+            if (featureVector != null && !featureVector.isEmpty()) {
+                nbRows++;
+            }
+        }
+
+        FeatureMatrix featureMatrix = new FeatureMatrix(nbRows, featureDataExtractor.getFeatureSchema().size());
+        int row = 0;
+        for (int i = 0; i < features.size(); i++) {
+            FeatureVector featureVector = features.get(i);
+            if (featureVector == null) {
+                continue;
+            }
+            if (featureVector.isEmpty()) {
+                wikidataElementInfosList.get(i).setPredictedClass("OTHER");
+            } else {
+                featureMatrix.setRow(row++, featureVector);
+            }
+        }
+
+        // the same model for the whole batch, even if it is replaced meanwhile
+        LoadedModel model = modelHolder.current();
+        int[] predictions = model.getEngine().predict(featureMatrix);
+        List<String> classMapper = ClassExtractor.classMap;
+        row = 0;
+        for (int i = 0; i < features.size(); i++) {
+            FeatureVector featureVector = features.get(i);
+            if (featureVector != null && !featureVector.isEmpty()) {
+                wikidataElementInfosList.get(i).setPredictedClass(classMapper.get(predictions[row++]));
+                wikidataElementInfosList.get(i).setModelVersion(model.getVersion());
+            }
+        }
+    }
+
+    private void predictClass(WikidataElementInfos wikidataElementInfos, FeatureVector features, int topK) {
+        // if the features are only 0 for all, they don't need to be predicted; they are stated as OTHER
+        // OTHER might be entity but recognized as UNKNOWN class type or it might be not entity)
+        if (features.isEmpty()) {
+            wikidataElementInfos.setPredictedClass("OTHER");
+            return;
+        }
+        List<String> classMapper = ClassExtractor.classMap;
+        // the same model for the whole prediction, even if it is replaced meanwhile
+        LoadedModel model = modelHolder.current();
+        ForestEngine engine = model.getEngine();
+        wikidataElementInfos.setModelVersion(model.getVersion());
+        if (topK <= 0) {
+            // predict the instance's class based on the features collected
+            wikidataElementInfos.setPredictedClass(classMapper.get(engine.predict(features)));
+            return;
+        }
+
+        int[] votes = new int[engine.numberOfClasses()];
+        int prediction = engine.predict(features, votes);
+        wikidataElementInfos.setPredictedClass(classMapper.get(prediction));
+
+        // classes ranked by their votes, the ties in the order of the classes as for the prediction
+        Integer[] ranking = new Integer[votes.length];
+        for (int i = 0; i < ranking.length; i++) {
+            ranking[i] = i;
+        }
+        Arrays.sort(ranking, (a, b) -> votes[a] != votes[b] ? Integer.compare(votes[b], votes[a]) : Integer.compare(a, b));
+
+        double nbTrees = engine.size();
+        Map<String, Double> classDistribution = new LinkedHashMap<>();
+        List<String> topClasses = new ArrayList<>();
+        for (int claz : ranking) {
+            // the classes without any vote are neither in the distribution nor in the top classes
+            if (votes[claz] == 0) {
+                break;
+            }
+            classDistribution.put(classMapper.get(claz), votes[claz] / nbTrees);
+            if (topClasses.size() < topK) {
+                topClasses.add(classMapper.get(claz));
+            }
+        }
+        int runnerUpVotes = ranking.length > 1 ? votes[ranking[1]] : 0;
+        wikidataElementInfos.setClassDistribution(classDistribution);
+        wikidataElementInfos.setTopClasses(topClasses);
+        wikidataElementInfos.setMargin((votes[ranking[0]] - runnerUpVotes) / nbTrees);
+    }
+
     public void predictForPreannotation(File fileInput, File fileOutput) throws Exception {
         // get the wikiId and class from the new csv file
         TrainerGenerator trainerGenerator = new TrainerGenerator();
-        List<WikidataElementInfos> inputList = new ArrayList<>();
-        inputList = trainerGenerator.extractData(fileInput);
+        List<WikidataElementInfos> inputList = trainerGenerator.extractData(fileInput);
         String[] headerPredict = {"WikidataID,LabelWikidata,Class"};
-        String resultPredict, label, wikidata = null;
+        String resultPredict, label;
         try {
             csvWriter = new CSVWriter(new FileWriter(fileOutput), ',', CSVWriter.NO_QUOTE_CHARACTER);
             // header's file
             csvWriter.writeNext(headerPredict);
-            for (WikidataElementInfos wikiElement : inputList) {
-                wikidata = wikiElement.getWikidataId();
-                // get the prediction result of every wikidata Id in the csv file
-                resultPredict = predict(wikidata).getPredictedClass();
-                // get the label of every wikidata Id in the csv file
-                FeatureDataExtractor extractor = new FeatureDataExtractor(wrapper);
-
-                final WikidataElementInfos wikidataElement = extractor.getFeatureWikidata(wikidata);
-                label = wikidataElement.getLabel();
+            // get the prediction result and the label of every wikidata Id in the csv file
+            String[] wikidataIds = new String[inputList.size()];
+            for (int i = 0; i < wikidataIds.length; i++) {
+                wikidataIds[i] = inputList.get(i).getWikidataId();
+            }
+            List<WikidataElementInfos> resultList = predictBatch(wikidataIds);
+            for (int i = 0; i < wikidataIds.length; i++) {
+                resultPredict = resultList.get(i).getPredictedClass();
+                label = resultList.get(i).getLabel();
                 // to fill the null result by string "null"
                 if (resultPredict == null){
                     resultPredict = "null";
                 }
                 // write the result into a new csv file
-                String[] dataPredict = {wikiElement.getWikidataId(), label, resultPredict};
+                String[] dataPredict = {wikidataIds[i], label, resultPredict};
                 csvWriter.writeNext(dataPredict);
             }
 
         } catch (RuntimeException e){
-            LOGGER.info("Some errors encountered when collecting some features for predicting a Wikidata Id \""+ wikidata +"\"", e);
+            LOGGER.info("Some errors encountered when collecting some features for predicting the Wikidata Ids of \""+ fileInput +"\"", e);
         }
         System.out.print("Result in " + fileOutput);
         csvWriter.flush();
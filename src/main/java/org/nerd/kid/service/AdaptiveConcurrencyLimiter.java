@@ -0,0 +1,253 @@
+package org.nerd.kid.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/*
+limit of the calls made at the same time to a remote service (entity-fishing), adapted to its latency (AIMD):
+  - the limit grows by 1 every 'limit' calls (once by round trip) while the calls succeed in less than twice the latency
+    of the service without load (the lowest latency of the last 1000 calls), and while the limit is used
+  - the limit is cut by 10% when a call fails or is slower, at most once by round trip
+  - the limit is always between 1 and 'maxLimit', the static cap; with 'adaptive' false the limit is simply the cap
+the calls beyond the limit wait for a call to end; the asynchronous calls (executeAsync) are queued without any thread,
+the executor getting a call only once it can be made
+
+the client of the command line tools is set by system properties (e.g. -Dnerdkid.limiter.maxLimit=32,
+-Dnerdkid.limiter.adaptive=false); the limit, the calls in flight and the calls waiting are reported by the gauges
+'org.nerd.kid.service.AdaptiveConcurrencyLimiter.*'
+* */
+
+public class AdaptiveConcurrencyLimiter {
+    public static final String INITIAL_LIMIT_PROPERTY = "nerdkid.limiter.initialLimit";
+    public static final String MAX_LIMIT_PROPERTY = "nerdkid.limiter.maxLimit";
+    public static final String ADAPTIVE_PROPERTY = "nerdkid.limiter.adaptive";
+
+    public static final int DEFAULT_INITIAL_LIMIT = 8;
+    // as many calls as the connections to the service
+    public static final int DEFAULT_MAX_LIMIT = SharedHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    // latency of a call over the one without load beyond which the service is overloaded
+    private static final double LATENCY_TOLERANCE = 2.0;
+    // below it the differences of latency are noise (e.g. a local service)
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final double BACKOFF_RATIO = 0.9;
+    // calls after which the latency without load is measured again
+    private static final int LATENCY_WINDOW = 1000;
+
+    private final int maxLimit;
+    private final boolean adaptive;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    // the asynchronous calls waiting for the limit
+    private final Queue<AsyncCall<?>> queued = new ArrayDeque<>();
+    private long noLoadLatency = Long.MAX_VALUE;
+    private long windowMinLatency = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit, boolean adaptive) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.adaptive = adaptive;
+        this.limit = adaptive ? Math.max(1, Math.min(initialLimit, this.maxLimit)) : this.maxLimit;
+        this.lastDecrease = System.nanoTime();
+    }
+
+    // the limiter of the system properties, shared by the fetchers and NerdClient
+    public static AdaptiveConcurrencyLimiter shared() {
+        return Holder.LIMITER;
+    }
+
+    // gauges of the limiter, the ones of the last limiter registered are reported
+    public void registerMetrics(MetricRegistry registry) {
+        registerMetrics(registry, null);
+    }
+
+    // gauges of the limiter of another service, e.g. 'org.nerd.kid.service.AdaptiveConcurrencyLimiter.replica.limit'
+    public void registerMetrics(MetricRegistry registry, String service) {
+        register(registry, service, "limit", this::getLimit);
+        register(registry, service, "in-flight", this::getInFlight);
+        register(registry, service, "queue-depth", this::getWaiting);
+    }
+
+    private static void register(MetricRegistry registry, String service, String name, Gauge<?> gauge) {
+        String metricName = MetricRegistry.name(AdaptiveConcurrencyLimiter.class, service, name);
+        registry.remove(metricName);
+        registry.register(metricName, gauge);
+    }
+
+    // the call made once the limit allows it, an error of the call being a failure
+    public <T> T execute(Callable<T> call) throws Exception {
+        acquire();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            release(start, System.nanoTime() - start, success);
+        }
+    }
+
+    /* the call made by the executor once the limit allows it, an error of the call completing the future exceptionally;
+    until then the call is only queued, it doesn't hold a thread of the executor
+    */
+    public <T> CompletableFuture<T> executeAsync(Callable<T> call, Executor executor) {
+        AsyncCall<T> asyncCall = new AsyncCall<>(call, executor);
+        boolean acquired;
+        synchronized (this) {
+            acquired = inFlight < (int) limit;
+            if (acquired) {
+                inFlight++;
+            } else {
+                queued.add(asyncCall);
+            }
+        }
+        if (acquired) {
+            asyncCall.start();
+        }
+        return asyncCall.future;
+    }
+
+    private synchronized void acquire() throws InterruptedException {
+        waiting++;
+        try {
+            while (inFlight >= (int) limit) {
+                wait();
+            }
+        } finally {
+            waiting--;
+        }
+        inFlight++;
+    }
+
+    private void release(long start, long latency, boolean success) {
+        release(true, start, latency, success);
+    }
+
+    // the room of a call which couldn't be made, without taking it into account for the limit
+    private void cancel() {
+        release(false, 0, 0, false);
+    }
+
+    private void release(boolean made, long start, long latency, boolean success) {
+        List<AsyncCall<?>> next = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            if (made && adaptive) {
+                adapt(start, latency, success);
+            }
+            // the calls queued take the room left first, the threads waiting get the rest
+            while (!queued.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                next.add(queued.poll());
+            }
+            notifyAll();
+        }
+        for (AsyncCall<?> asyncCall : next) {
+            asyncCall.start();
+        }
+    }
+
+    private void adapt(long start, long latency, boolean success) {
+        windowMinLatency = Math.min(windowMinLatency, latency);
+        if (++windowSamples >= LATENCY_WINDOW) {
+            noLoadLatency = windowMinLatency;
+            windowMinLatency = Long.MAX_VALUE;
+            windowSamples = 0;
+        } else {
+            noLoadLatency = Math.min(noLoadLatency, latency);
+        }
+
+        if (!success || latency > LATENCY_TOLERANCE * noLoadLatency + LATENCY_SLACK_NANOS) {
+            // the calls started before the last decrease are already taken into account
+            if (start > lastDecrease) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastDecrease = System.nanoTime();
+            }
+        } else if (inFlight + 1 >= (int) limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    // the calls waiting for the limit, in a thread or queued
+    public synchronized int getWaiting() {
+        return waiting + queued.size();
+    }
+
+    private class AsyncCall<T> implements Runnable {
+        private final Callable<T> call;
+        private final Executor executor;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        AsyncCall(Callable<T> call, Executor executor) {
+            this.call = call;
+            this.executor = executor;
+        }
+
+        // the limit allows the call, it is given to the executor
+        void start() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                cancel();
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            boolean success = false;
+            T result = null;
+            Throwable error = null;
+            try {
+                result = call.call();
+                success = true;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                release(start, System.nanoTime() - start, success);
+            }
+            if (success) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private static class Holder {
+        private static final AdaptiveConcurrencyLimiter LIMITER = create();
+
+        private static AdaptiveConcurrencyLimiter create() {
+            String adaptive = System.getProperty(ADAPTIVE_PROPERTY);
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+                    Integer.getInteger(INITIAL_LIMIT_PROPERTY, DEFAULT_INITIAL_LIMIT),
+                    Integer.getInteger(MAX_LIMIT_PROPERTY, DEFAULT_MAX_LIMIT),
+                    adaptive == null || Boolean.parseBoolean(adaptive));
+            limiter.registerMetrics(NerdKidMetrics.registry());
+            return limiter;
+        }
+    }
+}
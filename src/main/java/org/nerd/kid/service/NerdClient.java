@@ -9,12 +9,12 @@ import com.google.gson.JsonParser;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.nerd.kid.extractor.grobidNer.WikidataIdClassExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,15 +73,12 @@ public class NerdClient {
                 node.set("language", dataNode);
             }
             HttpPost httpPost = new HttpPost(uri);
-            CloseableHttpClient httpResponse = HttpClients.createDefault();
+            // the connections of entity-fishing are kept alive and shared (see SharedHttpClient)
+            CloseableHttpClient httpResponse = SharedHttpClient.get();
 
             httpPost.setHeader("Content-Type", APPLICATION_JSON.toString());
             httpPost.setEntity(new StringEntity(node.toString()));
-            CloseableHttpResponse closeableHttpResponse = httpResponse.execute(httpPost);
-
-            if (closeableHttpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                result = IOUtils.toString(closeableHttpResponse.getEntity().getContent(), StandardCharsets.UTF_8);
-            }
+            result = disambiguate(httpResponse, httpPost);
 
         } catch (URISyntaxException e) {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of short text disambiguation.", e);
@@ -91,6 +88,9 @@ public class NerdClient {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of short text disambiguation.", e);
         } catch (IOException e) {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of short text disambiguation.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Interrupted while waiting for Entity-Fishing API service of short text disambiguation.", e);
         }
 
         return result;
@@ -120,16 +120,12 @@ public class NerdClient {
                 node.set("language", dataNode);
             }
             HttpPost httpPost = new HttpPost(uri);
-            CloseableHttpClient httpResponse = HttpClients.createDefault();
+            // the connections of entity-fishing are kept alive and shared (see SharedHttpClient)
+            CloseableHttpClient httpResponse = SharedHttpClient.get();
 
             httpPost.setHeader("Content-Type", APPLICATION_JSON.toString());
             httpPost.setEntity(new StringEntity(node.toString()));
-            CloseableHttpResponse closeableHttpResponse = httpResponse.execute(httpPost);
-
-
-            if (closeableHttpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                result = IOUtils.toString(closeableHttpResponse.getEntity().getContent(), StandardCharsets.UTF_8);
-            }
+            result = disambiguate(httpResponse, httpPost);
 
         } catch (URISyntaxException e) {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of text disambiguation.", e);
@@ -139,11 +135,40 @@ public class NerdClient {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of text disambiguation.", e);
         } catch (IOException e) {
             LOGGER.info("Some errors encountered when extracting data from Entity-Fishing API service of text disambiguation.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Interrupted while waiting for Entity-Fishing API service of text disambiguation.", e);
         }
 
         return result;
     }
 
+    // the response of entity-fishing if it is OK, the calls made at the same time being limited (see AdaptiveConcurrencyLimiter)
+    private String disambiguate(CloseableHttpClient client, HttpPost httpPost) throws IOException, InterruptedException {
+        try {
+            return AdaptiveConcurrencyLimiter.shared().execute(() -> {
+                try (CloseableHttpResponse closeableHttpResponse = client.execute(httpPost)) {
+                    int status = closeableHttpResponse.getStatusLine().getStatusCode();
+                    if (status == HttpStatus.SC_OK) {
+                        return IOUtils.toString(closeableHttpResponse.getEntity().getContent(), StandardCharsets.UTF_8);
+                    }
+                    // the errors of the service slow the calls down
+                    if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                        throw new HttpResponseException(status, "Remote service exception, status " + status);
+                    }
+                    return null;
+                }
+            });
+        } catch (HttpResponseException e) {
+            LOGGER.info("Some errors encountered from Entity-Fishing API service, status " + e.getStatusCode());
+            return null;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
     public String toJson(String jsonString) {
         JsonParser parser = new JsonParser();
         JsonObject jsonObject = parser.parse(jsonString).getAsJsonObject();
@@ -0,0 +1,17 @@
+package org.nerd.kid.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/*
+registry of the metrics of nerdKid (inference, fetchers), shared by the library and the web service:
+the web service registers its own registry of Dropwizard under this name, so that they are reported by the admin port
+* */
+
+public class NerdKidMetrics {
+    public static final String REGISTRY_NAME = "nerd-kid";
+
+    public static MetricRegistry registry() {
+        return SharedMetricRegistries.getOrCreate(REGISTRY_NAME);
+    }
+}
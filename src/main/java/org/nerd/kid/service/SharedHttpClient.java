@@ -0,0 +1,99 @@
+package org.nerd.kid.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/*
+HTTP client of entity-fishing, shared by the fetchers and NerdClient: the connections are kept alive in a pool
+(bounded in total and by host), and every request has a connect timeout and a read timeout
+
+the client of the command line tools is set by system properties, e.g. -Dnerdkid.http.maxConnectionsPerRoute=16,
+the web service builds its own from its configuration; the leased, available and pending connections of the shared client
+are reported by the gauges 'org.nerd.kid.service.SharedHttpClient.*'
+* */
+
+public final class SharedHttpClient {
+    public static final String MAX_CONNECTIONS_PROPERTY = "nerdkid.http.maxConnections";
+    public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "nerdkid.http.maxConnectionsPerRoute";
+    // in milliseconds
+    public static final String CONNECT_TIMEOUT_PROPERTY = "nerdkid.http.connectTimeout";
+    public static final String READ_TIMEOUT_PROPERTY = "nerdkid.http.readTimeout";
+    public static final String KEEP_ALIVE_PROPERTY = "nerdkid.http.keepAlive";
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    // the same defaults for the command line tools and the web service (see EntityFishingConfiguration)
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 64;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 2000;
+    public static final int DEFAULT_READ_TIMEOUT = 10000;
+    public static final long DEFAULT_KEEP_ALIVE = 30000;
+
+    private SharedHttpClient() {
+    }
+
+    // the client of the system properties, created once
+    public static CloseableHttpClient get() {
+        return Holder.CLIENT;
+    }
+
+    // a new pooled client, the keep-alive being the one of the server if it is shorter
+    public static CloseableHttpClient create(int maxConnections, int maxConnectionsPerRoute,
+                                             int connectTimeout, int readTimeout, long keepAlive) {
+        return create(connectionManager(maxConnections, maxConnectionsPerRoute), connectTimeout, readTimeout, keepAlive);
+    }
+
+    private static PoolingHttpClientConnectionManager connectionManager(int maxConnections, int maxConnectionsPerRoute) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return connectionManager;
+    }
+
+    private static CloseableHttpClient create(PoolingHttpClientConnectionManager connectionManager,
+                                              int connectTimeout, int readTimeout, long keepAlive) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+        };
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .build();
+    }
+
+    private static void registerMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        MetricRegistry registry = NerdKidMetrics.registry();
+        registry.register(MetricRegistry.name(SharedHttpClient.class, "leased"),
+                (Gauge<Integer>) () -> connectionManager.getTotalStats().getLeased());
+        registry.register(MetricRegistry.name(SharedHttpClient.class, "available"),
+                (Gauge<Integer>) () -> connectionManager.getTotalStats().getAvailable());
+        registry.register(MetricRegistry.name(SharedHttpClient.class, "pending"),
+                (Gauge<Integer>) () -> connectionManager.getTotalStats().getPending());
+    }
+
+    private static class Holder {
+        private static final CloseableHttpClient CLIENT = create();
+
+        private static CloseableHttpClient create() {
+            PoolingHttpClientConnectionManager connectionManager = connectionManager(
+                    Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS),
+                    Integer.getInteger(MAX_CONNECTIONS_PER_ROUTE_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+            registerMetrics(connectionManager);
+            return SharedHttpClient.create(connectionManager,
+                    Integer.getInteger(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT),
+                    Integer.getInteger(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT),
+                    Long.getLong(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE));
+        }
+    }
+}
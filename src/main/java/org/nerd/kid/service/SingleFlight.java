@@ -0,0 +1,87 @@
+package org.nerd.kid.service;
+
+import com.codahale.metrics.Counter;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/*
+calls shared by the callers asking the same key at the same time: the first caller makes the call, the others wait for
+its result (or its error) instead of making the same call; the key is free again as soon as the call ends
+
+the callers which didn't make any call are counted by the counter given
+* */
+
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    // e.g. MetricRegistry.name(PredictionCache.class, "coalesced")
+    public SingleFlight(String coalescedMetricName) {
+        this.coalesced = NerdKidMetrics.registry().counter(coalescedMetricName);
+    }
+
+    // the call of the key made by the caller, or the result of the same call in flight
+    public V call(K key, Callable<V> call) throws Exception {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlight.putIfAbsent(key, shared);
+        if (inFlightCall != null) {
+            coalesced.inc();
+            try {
+                return inFlightCall.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            V value = call.call();
+            inFlight.remove(key, shared);
+            shared.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // the same for an asynchronous call, the callers of the key sharing its future
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = inFlight.putIfAbsent(key, shared);
+        if (inFlightCall != null) {
+            coalesced.inc();
+            return inFlightCall;
+        }
+        try {
+            call.get().whenComplete((value, e) -> {
+                // freed before the callers go on, so that a call after this one is a new call
+                inFlight.remove(key, shared);
+                if (e != null) {
+                    shared.completeExceptionally(e);
+                } else {
+                    shared.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+        }
+        return shared;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public long coalesced() {
+        return coalesced.getCount();
+    }
+}
@@ -0,0 +1,100 @@
+package org.nerd.kid.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
+import org.nerd.kid.service.SharedHttpClient;
+
+// knowledge base of entity-fishing and pool of connections to it (see SharedHttpClient), e.g. 'entityFishing: {url: http://localhost:8090/service/kb/concept}'
+public class EntityFishingConfiguration {
+    private String url = NerdKBFetcherWrapper.DEFAULT_URL;
+    // replica asked when the service is slow (see ResilientFetcherWrapper), none by default
+    private String replicaUrl = null;
+    private int maxConnections = SharedHttpClient.DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = SharedHttpClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private Duration connectTimeout = Duration.milliseconds(SharedHttpClient.DEFAULT_CONNECT_TIMEOUT);
+    private Duration readTimeout = Duration.milliseconds(SharedHttpClient.DEFAULT_READ_TIMEOUT);
+    private Duration keepAlive = Duration.milliseconds(SharedHttpClient.DEFAULT_KEEP_ALIVE);
+    // calls at the same time adapted to the latency of the service (see AdaptiveConcurrencyLimiter), up to maxConnectionsPerRoute
+    private boolean adaptiveConcurrency = true;
+
+    @JsonProperty
+    public String getUrl() {
+        return url;
+    }
+
+    @JsonProperty
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    @JsonProperty
+    public String getReplicaUrl() {
+        return replicaUrl;
+    }
+
+    @JsonProperty
+    public void setReplicaUrl(String replicaUrl) {
+        this.replicaUrl = replicaUrl;
+    }
+
+    @JsonProperty
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @JsonProperty
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    @JsonProperty
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    @JsonProperty
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    @JsonProperty
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    @JsonProperty
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    @JsonProperty
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    @JsonProperty
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    @JsonProperty
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    @JsonProperty
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    @JsonProperty
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    @JsonProperty
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+}
@@ -0,0 +1,54 @@
+package org.nerd.kid.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+/* batches of the predictions asked at the same time (see PredictionBatcher), disabled by default,
+e.g. 'microBatch: {enabled: true, window: 5ms, maxBatchSize: 50}'
+*/
+public class MicroBatchConfiguration {
+    private boolean enabled = false;
+    private Duration window = Duration.milliseconds(5);
+    private int maxBatchSize = 50;
+    private int threads = 8;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public Duration getWindow() {
+        return window;
+    }
+
+    @JsonProperty
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    @JsonProperty
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @JsonProperty
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @JsonProperty
+    public int getThreads() {
+        return threads;
+    }
+
+    @JsonProperty
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
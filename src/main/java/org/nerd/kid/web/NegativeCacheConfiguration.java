@@ -0,0 +1,53 @@
+package org.nerd.kid.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+// cache of the unknown and featureless Wikidata Ids (see NegativeCacheFetcherWrapper), e.g. 'negativeCache: {ttl: 6 hours}'
+public class NegativeCacheConfiguration {
+    private boolean enabled = true;
+    private Duration ttl = Duration.hours(1);
+    private long maxEntries = 1000000;
+    // Bloom filter of the valid Wikidata Ids, none by default
+    private String bloomFilter = null;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    @JsonProperty
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    @JsonProperty
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    @JsonProperty
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @JsonProperty
+    public String getBloomFilter() {
+        return bloomFilter;
+    }
+
+    @JsonProperty
+    public void setBloomFilter(String bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+}
@@ -1,6 +1,98 @@
 package org.nerd.kid.web;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.Configuration;
 
 public class NerdKidConfiguration extends Configuration {
+    // inference engine of the prediction service: SMILE, FLAT, QUICKSCORER, GENERATED or EARLY_EXIT
+    private String engine = "GENERATED";
+    // directory watched for a new model (model.bin or model.zip) reloaded without restarting, none by default
+    private String modelDirectory = null;
+    // local knowledge base of the Wikidata elements (see LmdbFetcherWrapper) used instead of entity-fishing, none by default
+    private String lmdbDirectory = null;
+    private PredictionCacheConfiguration predictionCache = new PredictionCacheConfiguration();
+    private NegativeCacheConfiguration negativeCache = new NegativeCacheConfiguration();
+    private EntityFishingConfiguration entityFishing = new EntityFishingConfiguration();
+    private MicroBatchConfiguration microBatch = new MicroBatchConfiguration();
+    private ResilienceConfiguration resilience = new ResilienceConfiguration();
+
+    @JsonProperty
+    public String getEngine() {
+        return engine;
+    }
+
+    @JsonProperty
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    @JsonProperty
+    public String getModelDirectory() {
+        return modelDirectory;
+    }
+
+    @JsonProperty
+    public void setModelDirectory(String modelDirectory) {
+        this.modelDirectory = modelDirectory;
+    }
+
+    @JsonProperty
+    public String getLmdbDirectory() {
+        return lmdbDirectory;
+    }
+
+    @JsonProperty
+    public void setLmdbDirectory(String lmdbDirectory) {
+        this.lmdbDirectory = lmdbDirectory;
+    }
+
+    @JsonProperty
+    public PredictionCacheConfiguration getPredictionCache() {
+        return predictionCache;
+    }
+
+    @JsonProperty
+    public void setPredictionCache(PredictionCacheConfiguration predictionCache) {
+        this.predictionCache = predictionCache;
+    }
+
+    @JsonProperty
+    public NegativeCacheConfiguration getNegativeCache() {
+        return negativeCache;
+    }
+
+    @JsonProperty
+    public void setNegativeCache(NegativeCacheConfiguration negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    @JsonProperty
+    public EntityFishingConfiguration getEntityFishing() {
+        return entityFishing;
+    }
+
+    @JsonProperty
+    public void setEntityFishing(EntityFishingConfiguration entityFishing) {
+        this.entityFishing = entityFishing;
+    }
+
+    @JsonProperty
+    public MicroBatchConfiguration getMicroBatch() {
+        return microBatch;
+    }
+
+    @JsonProperty
+    public void setMicroBatch(MicroBatchConfiguration microBatch) {
+        this.microBatch = microBatch;
+    }
+
+    @JsonProperty
+    public ResilienceConfiguration getResilience() {
+        return resilience;
+    }
+
+    @JsonProperty
+    public void setResilience(ResilienceConfiguration resilience) {
+        this.resilience = resilience;
+    }
 }
@@ -1,6 +1,7 @@
 package org.nerd.kid.web;
 
 
+import com.codahale.metrics.SharedMetricRegistries;
 import com.google.common.collect.Lists;
 import com.google.inject.Module;
 import com.hubspot.dropwizard.guicier.GuiceBundle;
@@ -8,13 +9,17 @@ import io.dropwizard.Application;
 import io.dropwizard.forms.MultiPartBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.nerd.kid.service.NerdKidMetrics;
 import org.nerd.kid.web.healthcheck.KidHealthCheck;
 import org.nerd.kid.web.module.NerdKidServiceModule;
-import org.nerd.kid.web.resource.KidPredictionResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.util.List;
 
 public final class NerdKidServiceApplication extends Application<NerdKidConfiguration> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NerdKidServiceApplication.class);
     private static final String RESOURCES = "/service";
 
 
@@ -30,7 +35,11 @@ public final class NerdKidServiceApplication extends Application<NerdKidConfigur
 
         final KidHealthCheck healthCheck = new KidHealthCheck();
         environment.healthChecks().register("kidHealth", healthCheck);
-        environment.jersey().register(new KidPredictionResource());
+        // the resources are registered by the Guice bundle (NerdKidServiceModule), with the model shared by all of them
+
+        // time from the start of the JVM to the server ready, the model being loaded
+        environment.lifecycle().addServerLifecycleListener(server ->
+                LOGGER.info("Service started in " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms"));
     }
 
     private List<? extends Module> getGuiceModules() {
@@ -40,6 +49,10 @@ public final class NerdKidServiceApplication extends Application<NerdKidConfigur
 
     @Override
     public void initialize(Bootstrap<NerdKidConfiguration> bootstrap) {
+        // the metrics of the predictors and fetchers are reported with the ones of the service
+        if (!SharedMetricRegistries.names().contains(NerdKidMetrics.REGISTRY_NAME)) {
+            SharedMetricRegistries.add(NerdKidMetrics.REGISTRY_NAME, bootstrap.getMetricRegistry());
+        }
         GuiceBundle<NerdKidConfiguration> guiceBundle = GuiceBundle.defaultBuilder(NerdKidConfiguration.class)
                 .modules(getGuiceModules())
                 .build();
@@ -0,0 +1,75 @@
+package org.nerd.kid.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+
+// cache of the predictions of the service (see PredictionCache), e.g. 'predictionCache: {maxEntries: 100000, maxSize: 64MB}'
+public class PredictionCacheConfiguration {
+    private boolean enabled = true;
+    private long maxEntries = 500000;
+    private Size maxSize = Size.megabytes(256);
+    private Duration expireAfterWrite = Duration.days(1);
+    private Duration refreshAfterWrite = Duration.hours(1);
+    private int refreshThreads = 4;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    @JsonProperty
+    public void setMaxEntries(long maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @JsonProperty
+    public Size getMaxSize() {
+        return maxSize;
+    }
+
+    @JsonProperty
+    public void setMaxSize(Size maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @JsonProperty
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    @JsonProperty
+    public void setExpireAfterWrite(Duration expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    @JsonProperty
+    public Duration getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    @JsonProperty
+    public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+    }
+
+    @JsonProperty
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    @JsonProperty
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+}
@@ -0,0 +1,109 @@
+package org.nerd.kid.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.dropwizard.util.Duration;
+
+/* retries, hedging and circuit breaker of the fetches from entity-fishing (see ResilientFetcherWrapper),
+e.g. 'resilience: {maxRetries: 3, timeout: 5s, failureThreshold: 50}'; hedging needs the 'replicaUrl' of 'entityFishing'
+*/
+public class ResilienceConfiguration {
+    private boolean enabled = true;
+    private int maxRetries = 2;
+    private Duration backoff = Duration.milliseconds(50);
+    private Duration maxBackoff = Duration.seconds(1);
+    private Duration minHedgeDelay = Duration.milliseconds(20);
+    private Duration timeout = Duration.seconds(15);
+    private int failureThreshold = 20;
+    private Duration openDuration = Duration.seconds(30);
+    private long staleEntries = 100000;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @JsonProperty
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    @JsonProperty
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    @JsonProperty
+    public Duration getBackoff() {
+        return backoff;
+    }
+
+    @JsonProperty
+    public void setBackoff(Duration backoff) {
+        this.backoff = backoff;
+    }
+
+    @JsonProperty
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    @JsonProperty
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    @JsonProperty
+    public Duration getMinHedgeDelay() {
+        return minHedgeDelay;
+    }
+
+    @JsonProperty
+    public void setMinHedgeDelay(Duration minHedgeDelay) {
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    @JsonProperty
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @JsonProperty
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    @JsonProperty
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    @JsonProperty
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    @JsonProperty
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    @JsonProperty
+    public void setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    @JsonProperty
+    public long getStaleEntries() {
+        return staleEntries;
+    }
+
+    @JsonProperty
+    public void setStaleEntries(long staleEntries) {
+        this.staleEntries = staleEntries;
+    }
+}
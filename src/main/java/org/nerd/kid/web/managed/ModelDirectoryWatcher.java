@@ -0,0 +1,103 @@
+package org.nerd.kid.web.managed;
+
+import io.dropwizard.lifecycle.Managed;
+import org.nerd.kid.model.ModelHolder;
+import org.nerd.kid.web.NerdKidConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/*
+watcher of the model directory of the configuration: the model is reloaded by its own thread as soon as
+a 'model.bin' or a 'model.zip' is written there; nothing is watched if there isn't any model directory
+
+the file should be moved in the directory once written: a model partially written is rejected (wrong checksum)
+and the current model is kept, until the file is modified again
+* */
+
+public class ModelDirectoryWatcher implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelDirectoryWatcher.class);
+
+    // time without any change in the directory before reloading, a model being often written in several steps
+    private static final long QUIET_PERIOD_MS = 1000;
+
+    private final ModelHolder modelHolder;
+    private final String modelDirectory;
+
+    private WatchService watchService = null;
+    private Thread thread = null;
+
+    @Inject
+    public ModelDirectoryWatcher(ModelHolder modelHolder, NerdKidConfiguration configuration) {
+        this.modelHolder = modelHolder;
+        this.modelDirectory = configuration.getModelDirectory();
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (modelDirectory == null) {
+            return;
+        }
+        Path directory = Paths.get(modelDirectory);
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(() -> watch(directory), "model-directory-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Watching the models of \"" + directory + "\"");
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (watchService != null) {
+            watchService.close();
+            thread.join(QUIET_PERIOD_MS);
+        }
+    }
+
+    private void watch(Path directory) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean modelChanged = isModelChanged(key);
+                // waiting for the end of the writing
+                while (modelChanged && (key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+                    isModelChanged(key);
+                }
+                if (modelChanged) {
+                    try {
+                        modelHolder.loadFromDirectory(directory);
+                    } catch (RuntimeException e) {
+                        LOGGER.info("Some errors encountered when reloading the model of \"" + directory + "\"", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the service is stopped
+        }
+    }
+
+    private static boolean isModelChanged(WatchKey key) {
+        boolean modelChanged = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object file = event.context();
+            if (file instanceof Path) {
+                String fileName = ((Path) file).getFileName().toString();
+                modelChanged |= fileName.equals(ModelHolder.MODEL_BIN) || fileName.equals(ModelHolder.MODEL_ZIP);
+            }
+        }
+        key.reset();
+        return modelChanged;
+    }
+}
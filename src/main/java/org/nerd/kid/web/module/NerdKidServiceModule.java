@@ -2,22 +2,63 @@ package org.nerd.kid.web.module;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.BloomFilter;
 import com.google.inject.Binder;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.hubspot.dropwizard.guicier.DropwizardAwareModule;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.nerd.kid.extractor.wikidata.LmdbFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.NegativeCacheFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.ResilientFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.SingleFlightFetcherWrapper;
+import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
+import org.nerd.kid.model.ForestEngine;
+import org.nerd.kid.model.ForestEngineType;
+import org.nerd.kid.model.ModelHolder;
+import org.nerd.kid.model.PredictionBatcher;
+import org.nerd.kid.model.PredictionCache;
+import org.nerd.kid.model.WikidataNERPredictor;
+import org.nerd.kid.service.AdaptiveConcurrencyLimiter;
+import org.nerd.kid.service.CircuitBreaker;
+import org.nerd.kid.service.SharedHttpClient;
+import org.nerd.kid.web.EntityFishingConfiguration;
+import org.nerd.kid.web.MicroBatchConfiguration;
+import org.nerd.kid.web.NegativeCacheConfiguration;
 import org.nerd.kid.web.NerdKidConfiguration;
+import org.nerd.kid.web.PredictionCacheConfiguration;
+import org.nerd.kid.web.ResilienceConfiguration;
+import org.nerd.kid.web.managed.ModelDirectoryWatcher;
 import org.nerd.kid.web.resource.KidPredictionResource;
+import org.nerd.kid.web.task.ReloadModelTask;
 
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+// the configuration and the environment of Dropwizard are bound by the Guice bundle
 public class NerdKidServiceModule extends DropwizardAwareModule<NerdKidConfiguration> {
 
 
     @Override
     public void configure(Binder binder) {
         //REST
-        binder.bind(KidPredictionResource.class);
+        binder.bind(KidPredictionResource.class).in(Singleton.class);
+
+        //model reloading
+        binder.bind(ReloadModelTask.class).in(Singleton.class);
+        binder.bind(ModelDirectoryWatcher.class).in(Singleton.class);
     }
 
     @Provides
@@ -40,4 +81,189 @@ public class NerdKidServiceModule extends DropwizardAwareModule<NerdKidConfigura
         return ClientBuilder.newClient();
     }
 
+    // model, feature schema and classes: loaded once per JVM and shared by every resource
+    @Provides
+    @Singleton
+    ForestEngineType provideForestEngineType(NerdKidConfiguration configuration) {
+        return ForestEngineType.fromName(configuration.getEngine(), ForestEngineType.GENERATED);
+    }
+
+    // the model of every prediction, replaced by the reloading task and the watcher of the model directory
+    @Provides
+    @Singleton
+    ModelHolder provideModelHolder(ForestEngineType engineType, MetricRegistry metricRegistry) {
+        ModelHolder modelHolder = ModelHolder.shared(engineType);
+        modelHolder.registerMetrics(metricRegistry);
+        return modelHolder;
+    }
+
+    @Provides
+    ForestEngine provideForestEngine(ModelHolder modelHolder) {
+        return modelHolder.engine();
+    }
+
+    @Provides
+    @Singleton
+    FeatureSchema provideFeatureSchema() {
+        return FeatureSchema.getInstance();
+    }
+
+    @Provides
+    @Singleton
+    List<String> provideClasses() {
+        return Collections.unmodifiableList(ClassExtractor.classMap);
+    }
+
+    @Provides
+    @Singleton
+    WikidataFetcherWrapper provideWikidataFetcherWrapper(NerdKidConfiguration configuration, MetricRegistry metricRegistry)
+            throws IOException {
+        if (configuration.getLmdbDirectory() != null) {
+            return localFetcher(configuration.getLmdbDirectory());
+        }
+        EntityFishingConfiguration entityFishing = configuration.getEntityFishing();
+        CloseableHttpClient client = SharedHttpClient.create(entityFishing.getMaxConnections(),
+                entityFishing.getMaxConnectionsPerRoute(),
+                (int) entityFishing.getConnectTimeout().toMilliseconds(),
+                (int) entityFishing.getReadTimeout().toMilliseconds(),
+                entityFishing.getKeepAlive().toMilliseconds());
+        getEnvironment().lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() throws Exception {
+                client.close();
+            }
+        });
+        ExecutorService fetchExecutor = fetchExecutor("wikidata-fetcher-%d", entityFishing);
+        AdaptiveConcurrencyLimiter limiter = limiter(entityFishing);
+        limiter.registerMetrics(metricRegistry);
+        WikidataFetcherWrapper wrapper = new NerdKBFetcherWrapper(entityFishing.getUrl(), client, fetchExecutor, limiter);
+        ResilienceConfiguration resilience = configuration.getResilience();
+        if (resilience.isEnabled()) {
+            wrapper = resilientFetcher(wrapper, entityFishing, resilience, client, metricRegistry);
+        }
+        // the same Id asked at the same time is fetched once
+        wrapper = new SingleFlightFetcherWrapper(wrapper);
+        NegativeCacheConfiguration negativeCache = configuration.getNegativeCache();
+        if (!negativeCache.isEnabled()) {
+            return wrapper;
+        }
+        BloomFilter<CharSequence> validIds = negativeCache.getBloomFilter() != null
+                ? NegativeCacheFetcherWrapper.readBloomFilter(new File(negativeCache.getBloomFilter()))
+                : null;
+        return new NegativeCacheFetcherWrapper(wrapper, negativeCache.getTtl().toMilliseconds(), TimeUnit.MILLISECONDS,
+                negativeCache.getMaxEntries(), validIds);
+    }
+
+    // the local knowledge base is read without network, there isn't anything to retry nor to cache
+    private WikidataFetcherWrapper localFetcher(String lmdbDirectory) {
+        LmdbFetcherWrapper wrapper = new LmdbFetcherWrapper(lmdbDirectory);
+        getEnvironment().lifecycle().manage(new Managed() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void stop() {
+                wrapper.close();
+            }
+        });
+        return wrapper;
+    }
+
+    // one thread by connection for the asynchronous fetches
+    private ExecutorService fetchExecutor(String nameFormat, EntityFishingConfiguration entityFishing) {
+        return getEnvironment().lifecycle().executorService(nameFormat)
+                .minThreads(entityFishing.getMaxConnectionsPerRoute())
+                .maxThreads(entityFishing.getMaxConnectionsPerRoute())
+                .build();
+    }
+
+    // the calls to a service of entity-fishing, at most one by connection
+    private static AdaptiveConcurrencyLimiter limiter(EntityFishingConfiguration entityFishing) {
+        return new AdaptiveConcurrencyLimiter(AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT,
+                entityFishing.getMaxConnectionsPerRoute(), entityFishing.isAdaptiveConcurrency());
+    }
+
+    // retries, circuit breaker and stale elements, and the hedges to the replica if there is one
+    private WikidataFetcherWrapper resilientFetcher(WikidataFetcherWrapper wrapper, EntityFishingConfiguration entityFishing,
+                                                    ResilienceConfiguration resilience, CloseableHttpClient client,
+                                                    MetricRegistry metricRegistry) {
+        ScheduledExecutorService scheduler = getEnvironment().lifecycle().scheduledExecutorService("fetcher-resilience-%d")
+                .threads(2)
+                .build();
+        // the timeouts and the hedges are cancelled by the fetches which end before them
+        if (scheduler instanceof ScheduledThreadPoolExecutor) {
+            ((ScheduledThreadPoolExecutor) scheduler).setRemoveOnCancelPolicy(true);
+        }
+        ResilientFetcherWrapper resilientWrapper = new ResilientFetcherWrapper("entity-fishing", wrapper, scheduler)
+                .retries(resilience.getMaxRetries(), resilience.getBackoff().toNanoseconds(),
+                        resilience.getMaxBackoff().toNanoseconds(), TimeUnit.NANOSECONDS)
+                .circuitBreaker(new CircuitBreaker(resilience.getFailureThreshold(),
+                        resilience.getOpenDuration().toNanoseconds(), TimeUnit.NANOSECONDS))
+                .staleEntries(resilience.getStaleEntries())
+                .timeout(resilience.getTimeout().toNanoseconds(), TimeUnit.NANOSECONDS);
+        if (entityFishing.getReplicaUrl() != null) {
+            /* the replica has its own threads: the calls to the service waiting for its limiter would hold them all
+            when it is overloaded, which is when the hedges are needed
+            */
+            ExecutorService replicaExecutor = fetchExecutor("wikidata-replica-fetcher-%d", entityFishing);
+            AdaptiveConcurrencyLimiter replicaLimiter = limiter(entityFishing);
+            replicaLimiter.registerMetrics(metricRegistry, "replica");
+            resilientWrapper.hedge(new NerdKBFetcherWrapper(entityFishing.getReplicaUrl(), client, replicaExecutor, replicaLimiter),
+                    resilience.getMinHedgeDelay().toNanoseconds(), TimeUnit.NANOSECONDS);
+        }
+        return resilientWrapper;
+    }
+
+    @Provides
+    @Singleton
+    WikidataNERPredictor provideWikidataNERPredictor(WikidataFetcherWrapper wrapper, ModelHolder modelHolder) {
+        return new WikidataNERPredictor(wrapper, modelHolder);
+    }
+
+    // the cache of the predictions, cleared when the model is replaced; nothing is kept if it is disabled
+    @Provides
+    @Singleton
+    PredictionCache providePredictionCache(WikidataNERPredictor predictor, NerdKidConfiguration configuration,
+                                           MetricRegistry metricRegistry) {
+        PredictionCacheConfiguration cacheConfiguration = configuration.getPredictionCache();
+        ExecutorService refreshExecutor = getEnvironment().lifecycle().executorService("prediction-cache-refresh-%d")
+                .minThreads(cacheConfiguration.getRefreshThreads())
+                .maxThreads(cacheConfiguration.getRefreshThreads())
+                .build();
+        PredictionCache predictionCache = new PredictionCache(predictor,
+                cacheConfiguration.isEnabled() ? cacheConfiguration.getMaxEntries() : 0,
+                cacheConfiguration.isEnabled() ? cacheConfiguration.getMaxSize().toBytes() : 0,
+                cacheConfiguration.getExpireAfterWrite().toMilliseconds(),
+                cacheConfiguration.getRefreshAfterWrite().toMilliseconds(), TimeUnit.MILLISECONDS, refreshExecutor);
+        predictionCache.registerMetrics(metricRegistry);
+
+        // the single predictions asked at the same time are predicted in batches, if enabled
+        MicroBatchConfiguration microBatch = configuration.getMicroBatch();
+        if (microBatch.isEnabled()) {
+            ExecutorService batchExecutor = getEnvironment().lifecycle().executorService("prediction-batch-%d")
+                    .minThreads(microBatch.getThreads())
+                    .maxThreads(microBatch.getThreads())
+                    .build();
+            PredictionBatcher batcher = new PredictionBatcher(predictor, microBatch.getWindow().toNanoseconds(),
+                    TimeUnit.NANOSECONDS, microBatch.getMaxBatchSize(), batchExecutor);
+            getEnvironment().lifecycle().manage(new Managed() {
+                @Override
+                public void start() {
+                }
+
+                @Override
+                public void stop() {
+                    batcher.close();
+                }
+            });
+            predictionCache.setBatcher(batcher);
+        }
+        return predictionCache;
+    }
+
 }
@@ -1,32 +1,46 @@
 package org.nerd.kid.web.resource;
 
 import com.google.inject.Inject;
-import org.nerd.kid.data.WikidataElementInfos;
-import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
-import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
-import org.nerd.kid.model.WikidataNERPredictor;
+import org.nerd.kid.model.PredictionCache;
 
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 import java.util.Optional;
 
 @Path("/ner")
 public class KidPredictionResource {
-    private WikidataNERPredictor predictor = null;
-    WikidataFetcherWrapper wrapper = new NerdKBFetcherWrapper();
+    private final PredictionCache predictionCache;
 
+    // the predictions of the predictor shared by the whole service go through the cache, see NerdKidServiceModule
     @Inject
-    public KidPredictionResource() {
-        this.predictor = new WikidataNERPredictor(wrapper);
+    public KidPredictionResource(PredictionCache predictionCache) {
+        this.predictionCache = predictionCache;
     }
 
+    /* the distribution of the votes of the trees, the top k classes and the margin are given with 'scores=true'
+    e.g. /service/ner?id=Q1&scores=true&topK=5
+    the request thread isn't blocked by the fetch of the element, the response is sent once it is predicted
+    */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public WikidataElementInfos predictNERClass(@QueryParam("id") Optional<String> name) {
-        return predictor.predict(name.orElseThrow(RuntimeException::new));
+    public void predictNERClass(@Suspended AsyncResponse asyncResponse,
+                                @QueryParam("id") Optional<String> name,
+                                @QueryParam("scores") @DefaultValue("false") boolean scores,
+                                @QueryParam("topK") @DefaultValue("3") int topK) {
+        String wikidataId = name.orElseThrow(RuntimeException::new);
+        predictionCache.predictAsync(wikidataId, scores ? Math.max(1, topK) : 0).whenComplete((wikidataElementInfos, e) -> {
+            if (e != null) {
+                asyncResponse.resume(e);
+            } else {
+                asyncResponse.resume(wikidataElementInfos);
+            }
+        });
     }
 }
 
@@ -0,0 +1,47 @@
+package org.nerd.kid.web.task;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import org.nerd.kid.model.LoadedModel;
+import org.nerd.kid.model.ModelHolder;
+import org.nerd.kid.web.NerdKidConfiguration;
+
+import javax.inject.Inject;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+
+/*
+admin task replacing the model of the service without restarting it, e.g.
+  curl -X POST http://localhost:8081/tasks/reload-model                            the model of the model directory
+  curl -X POST http://localhost:8081/tasks/reload-model?file=/path/to/model.bin    the model of the file given
+  curl -X POST http://localhost:8081/tasks/reload-model?rollback=true              back to the previous model
+the predictions keep on using the current model until the new one is loaded and checked
+* */
+
+public class ReloadModelTask extends Task {
+    private final ModelHolder modelHolder;
+    private final String modelDirectory;
+
+    @Inject
+    public ReloadModelTask(ModelHolder modelHolder, NerdKidConfiguration configuration) {
+        super("reload-model");
+        this.modelHolder = modelHolder;
+        this.modelDirectory = configuration.getModelDirectory();
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        LoadedModel model;
+        if (parameters.containsEntry("rollback", "true")) {
+            model = modelHolder.rollback();
+        } else if (parameters.containsKey("file")) {
+            model = modelHolder.load(Paths.get(parameters.get("file").iterator().next()));
+        } else if (modelDirectory != null) {
+            model = modelHolder.loadFromDirectory(Paths.get(modelDirectory));
+        } else {
+            output.println("No model directory configured, the file of the model must be given (file=...)");
+            return;
+        }
+        output.println("Now using the " + model);
+    }
+}
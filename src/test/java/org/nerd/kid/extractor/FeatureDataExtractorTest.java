@@ -1,11 +1,15 @@
 package org.nerd.kid.extractor;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.nerd.kid.data.FeatureVector;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -28,46 +32,46 @@ public class FeatureDataExtractorTest {
 
     @Test
     public void getFeatureWikidataTestPropertiesNoValues1() {
-        Double[] result = featureDataExtractor.getFeatureWikidata(propertiesNoValueList);
+        FeatureVector result = featureDataExtractor.getFeatureWikidata(propertiesNoValueList);
         // index is the row position in file resources\feature_mapper_no_value.csc (minus) 2
-        assertThat(result[0], is(0.0));
-        assertThat(result[1], is(0.0));
-        assertThat(result[2], is(0.0));
-        assertThat(result[3], is(0.0));
-        assertThat(result[4], is(0.0));
-        assertThat(result[5], is(0.0));
-        assertThat(result[6], is(0.0));
-        assertThat(result[7], is(0.0));
-        assertThat(result[8], is(1.0));
-        assertThat(result[9], is(0.0));
-        assertThat(result[10], is(0.0));
-        assertThat(result[11], is(0.0));
-        assertThat(result[12], is(1.0));
-        assertThat(result[13], is(0.0));
-        assertThat(result[14], is(0.0));
-        assertThat(result[15], is(0.0));
-        assertThat(result[16], is(0.0));
-        assertThat(result[19], is(1.0));
-        assertThat(result[24], is(1.0));
-        assertThat(result[45], is(1.0));
-        assertThat(result[46], is(1.0));
-        assertThat(result[50], is(1.0));
+        assertThat(result.get(0), is(false));
+        assertThat(result.get(1), is(false));
+        assertThat(result.get(2), is(false));
+        assertThat(result.get(3), is(false));
+        assertThat(result.get(4), is(false));
+        assertThat(result.get(5), is(false));
+        assertThat(result.get(6), is(false));
+        assertThat(result.get(7), is(false));
+        assertThat(result.get(8), is(true));
+        assertThat(result.get(9), is(false));
+        assertThat(result.get(10), is(false));
+        assertThat(result.get(11), is(false));
+        assertThat(result.get(12), is(true));
+        assertThat(result.get(13), is(false));
+        assertThat(result.get(14), is(false));
+        assertThat(result.get(15), is(false));
+        assertThat(result.get(16), is(false));
+        assertThat(result.get(19), is(true));
+        assertThat(result.get(24), is(true));
+        assertThat(result.get(45), is(true));
+        assertThat(result.get(46), is(true));
+        assertThat(result.get(50), is(true));
     }
 
     @Test
     public void getFeatureWikidataTestPropertiesNoValues2() {
         propertiesNoValueList = Arrays.asList("P1566","P30","P36");
-        Double[] result = featureDataExtractor.getFeatureWikidata(propertiesNoValueList);
+        FeatureVector result = featureDataExtractor.getFeatureWikidata(propertiesNoValueList);
         // index is the row position in file resources\feature_maspper_no_value.csc (minus) 2
-        assertThat(result[14], is(1.0));
-        assertThat(result[35], is(1.0));
-        assertThat(result[37], is(1.0));
+        assertThat(result.get(14), is(true));
+        assertThat(result.get(35), is(true));
+        assertThat(result.get(37), is(true));
     }
 
     @Test
     public void getFeatureWikidataTestProperties() {
         propertiesMap.put("P31", propertiesList);
-        Double[] result = featureDataExtractor.getFeatureWikidata(propertiesMap);
+        FeatureVector result = featureDataExtractor.getFeatureWikidata(propertiesMap);
 
         assertThat(propertiesMap.get("P31").get(0), is("Q1187811"));
         assertThat(propertiesMap.get("P31").get(1), is("Q1549591"));
@@ -75,19 +79,43 @@ public class FeatureDataExtractorTest {
         assertThat(propertiesMap.get("P31").get(3), is("Q515"));
 
         // index is the row position in file resources\feature_mapper_no_value.csc (minus) 2
-        assertThat(result[0], is(0.0));
-        assertThat(result[1], is(0.0));
-        assertThat(result[2], is(0.0));
-        assertThat(result[3], is(0.0));
-        assertThat(result[4], is(0.0));
-        assertThat(result[5], is(0.0));
-        assertThat(result[6], is(0.0));
-        assertThat(result[7], is(0.0));
-        assertThat(result[8], is(0.0));
-        assertThat(result[9], is(0.0));
-        assertThat(result[45], is(1.0));
-        assertThat(result[63], is(1.0));
-        assertThat(result[94], is(1.0));
-        assertThat(result[146], is(1.0));
+        assertThat(result.get(0), is(false));
+        assertThat(result.get(1), is(false));
+        assertThat(result.get(2), is(false));
+        assertThat(result.get(3), is(false));
+        assertThat(result.get(4), is(false));
+        assertThat(result.get(5), is(false));
+        assertThat(result.get(6), is(false));
+        assertThat(result.get(7), is(false));
+        assertThat(result.get(8), is(false));
+        assertThat(result.get(9), is(false));
+        assertThat(result.get(45), is(true));
+        assertThat(result.get(63), is(true));
+        assertThat(result.get(94), is(true));
+        assertThat(result.get(146), is(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testPrunedStatementsGiveTheSameFeatures() {
+        FeatureSchema featureSchema = FeatureSchema.getInstance();
+        propertiesMap.put("P31", Arrays.asList("Q1187811", "Q5", "Q42", "Q515"));
+        propertiesMap.put("P136", Arrays.asList("Q5", "Q42"));
+        propertiesMap.put("P9999", Arrays.asList("Q1"));
+
+        Map<String, List<String>> pruned = featureSchema.prune(propertiesMap);
+        assertThat(pruned.keySet(), is(new HashSet<>(Arrays.asList("P31", "P136"))));
+        assertThat(pruned.get("P136"), is(Collections.<String>emptyList()));
+        assertThat(featureSchema.toFeatureVector(pruned), is(featureSchema.toFeatureVector(propertiesMap)));
+    }
+
+    @Test
+    public void featureVectorJsonTest() throws Exception {
+        FeatureVector featureVector = new FeatureVector(3);
+        featureVector.set(1);
+        ObjectMapper mapper = new ObjectMapper();
+        // the array of 0.0-1.0 of the service, read back as the same vector
+        String json = mapper.writeValueAsString(featureVector);
+        assertThat(json, is("[0.0,1.0,0.0]"));
+        assertThat(mapper.readValue(json, FeatureVector.class), is(featureVector));
+    }
+}
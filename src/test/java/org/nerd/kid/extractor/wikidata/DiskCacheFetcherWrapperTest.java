@@ -0,0 +1,101 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DiskCacheFetcherWrapperTest {
+    private File directory;
+    private AtomicInteger fetches;
+    private boolean failing;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("wikidata-cache").toFile();
+        fetches = new AtomicInteger();
+        failing = false;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    // a fetcher knowing the items only
+    private WikidataFetcherWrapper service() {
+        return wikiId -> {
+            fetches.incrementAndGet();
+            if (failing) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            if (!wikiId.startsWith("Q")) {
+                return null;
+            }
+            WikidataElement wikidataElement = new WikidataElement();
+            wikidataElement.setId(wikiId);
+            wikidataElement.setLabel("label of " + wikiId);
+            Map<String, List<String>> properties = new HashMap<>();
+            properties.put("P31", Collections.singletonList("Q5"));
+            wikidataElement.setProperties(properties);
+            return wikidataElement;
+        };
+    }
+
+    @Test
+    public void testElementsAreKeptFromOneRunToTheNext() throws Exception {
+        try (DiskCacheFetcherWrapper target = new DiskCacheFetcherWrapper(service(), directory, 1, TimeUnit.DAYS)) {
+            assertThat(target.getElement("Q1").getLabel(), is("label of Q1"));
+            assertThat(target.getElement("P1"), is(nullValue()));
+            assertThat(target.getElements(Arrays.asList("Q1", "Q2")).get("Q2").getLabel(), is("label of Q2"));
+            assertThat(fetches.get(), is(3));
+            assertThat(target.getHits(), is(1L));
+            assertThat(target.getMisses(), is(3L));
+        }
+
+        // the next run reads everything from the disk
+        try (DiskCacheFetcherWrapper target = new DiskCacheFetcherWrapper(service(), directory, 1, TimeUnit.DAYS)) {
+            Map<String, WikidataElement> elements = target.getElements(Arrays.asList("Q1", "Q2", "P1"));
+            assertThat(elements.size(), is(3));
+            assertThat(elements.get("Q1").getProperties().get("P31"), is(Collections.singletonList("Q5")));
+            assertThat(elements.get("P1"), is(nullValue()));
+            assertThat(target.getElementAsync("Q2").get().getLabel(), is("label of Q2"));
+            assertThat(fetches.get(), is(3));
+            assertThat(target.getHitRate(), is(1.0));
+        }
+    }
+
+    @Test
+    public void testExpiredElementsAreFetchedAgain() throws Exception {
+        try (DiskCacheFetcherWrapper target = new DiskCacheFetcherWrapper(service(), directory, 1, TimeUnit.DAYS)) {
+            target.getElements(Arrays.asList("Q1", "Q2"));
+        }
+        Thread.sleep(5);
+        try (DiskCacheFetcherWrapper target = new DiskCacheFetcherWrapper(service(), directory, 1, TimeUnit.MILLISECONDS)) {
+            assertThat(target.getElement("Q1").getLabel(), is("label of Q1"));
+            assertThat(fetches.get(), is(3));
+            assertThat(target.getExpired(), is(1L));
+
+            // the expired element is given when it can't be fetched again
+            failing = true;
+            assertThat(target.getElement("Q2").getLabel(), is("label of Q2"));
+            assertThat(fetches.get(), is(4));
+        }
+    }
+}
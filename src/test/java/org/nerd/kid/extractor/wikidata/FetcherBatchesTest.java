@@ -0,0 +1,93 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class FetcherBatchesTest {
+    private List<String> fetchedOneByOne;
+    private List<List<String>> batches;
+    // Q0 is unknown, Q3 is an error of the service, the others are known
+    private WikidataFetcherWrapper wrapper;
+
+    @Before
+    public void setUp() {
+        fetchedOneByOne = Collections.synchronizedList(new ArrayList<>());
+        batches = new ArrayList<>();
+        wrapper = wikiId -> {
+            fetchedOneByOne.add(wikiId);
+            if (wikiId.equals("Q3")) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            return wikiId.equals("Q0") ? null : element(wikiId);
+        };
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        Map<String, WikidataElement> result = FetcherBatches.getElements(wrapper, Arrays.asList("Q1", "Q2", "Q0", "Q4", "Q1"), 2, wikiIds -> {
+            batches.add(wikiIds);
+            Map<String, WikidataElement> elements = new HashMap<>();
+            for (String wikiId : wikiIds) {
+                elements.put(wikiId, wikiId.equals("Q0") ? null : element(wikiId));
+            }
+            return elements;
+        });
+
+        assertThat(batches, is(Arrays.asList(Arrays.asList("Q1", "Q2"), Arrays.asList("Q0", "Q4"))));
+        assertThat(fetchedOneByOne.isEmpty(), is(true));
+        assertThat(result.size(), is(4));
+        assertThat(result.get("Q4").getId(), is("Q4"));
+        assertThat(result.containsKey("Q0"), is(true));
+        assertThat(result.get("Q0"), is(nullValue()));
+    }
+
+    @Test
+    public void testFallbackOneByOne() throws Exception {
+        // the first chunk fails, the second one doesn't give Q4
+        Map<String, WikidataElement> result = FetcherBatches.getElements(wrapper, Arrays.asList("Q1", "Q3", "Q2", "Q4"), 2, wikiIds -> {
+            batches.add(wikiIds);
+            if (batches.size() == 1) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            return Collections.singletonMap("Q2", element("Q2"));
+        });
+
+        assertThat(fetchedOneByOne, is(Arrays.asList("Q1", "Q3", "Q4")));
+        assertThat(result.get("Q1").getId(), is("Q1"));
+        assertThat(result.get("Q4").getId(), is("Q4"));
+        // the error isn't taken for an unknown Id
+        assertThat(result.containsKey("Q3"), is(false));
+    }
+
+    @Test
+    public void testAsyncChunks() throws Exception {
+        Map<String, WikidataElement> result = FetcherBatches.getElementsAsync(wrapper, Arrays.asList("Q1", "Q0", "Q3", "Q2"), 3);
+
+        assertThat(fetchedOneByOne.size(), is(4));
+        assertThat(result.size(), is(3));
+        assertThat(result.get("Q2").getId(), is("Q2"));
+        assertThat(result.get("Q0"), is(nullValue()));
+        assertThat(result.containsKey("Q3"), is(false));
+    }
+
+    private static WikidataElement element(String wikiId) {
+        WikidataElement wikidataElement = new WikidataElement();
+        wikidataElement.setId(wikiId);
+        wikidataElement.setLabel("label of " + wikiId);
+        wikidataElement.setProperties(new HashMap<>());
+        return wikidataElement;
+    }
+}
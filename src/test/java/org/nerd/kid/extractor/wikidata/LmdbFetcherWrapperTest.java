@@ -0,0 +1,126 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LmdbFetcherWrapperTest {
+    // a dump of Wikidata: an item, a property and an item with a label to clean
+    private static final String DUMP = "[\n"
+            + "{\"type\":\"item\",\"id\":\"Q1\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"universe\"}},\"claims\":{"
+            + "\"P31\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":36906466,\"id\":\"Q36906466\"},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\"}],"
+            + "\"P580\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P580\",\"datavalue\":{\"value\":{\"time\":\"-13798000000-00-00T00:00:00Z\"},\"type\":\"time\"},\"datatype\":\"time\"},\"type\":\"statement\"}]}},\n"
+            + "{\"type\":\"property\",\"id\":\"P31\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"instance of\"}},\"claims\":{}},\n"
+            + "{\"type\":\"item\",\"id\":\"Q90\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Paris, France\"}},\"claims\":{"
+            + "\"P31\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":515,\"id\":\"Q515\"},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\"},"
+            + "{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":5119,\"id\":\"Q5119\"},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\"}]}}\n"
+            + "]\n";
+
+    private File directory;
+    private FeatureSchema featureSchema;
+    private LmdbFetcherWrapper target;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("lmdb").toFile();
+        // the statements of the features P580 and P31_Q515 only
+        featureSchema = FeatureSchema.of(Collections.singletonList("P580"), Collections.singletonList("P31_Q515"));
+        try (LmdbKnowledgeBaseBuilder builder = new LmdbKnowledgeBaseBuilder(directory, 16 << 20, featureSchema)) {
+            assertThat(builder.load(new ByteArrayInputStream(DUMP.getBytes(UTF_8))), is(2L));
+        }
+        target = new LmdbFetcherWrapper(directory, featureSchema);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        target.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testGetElement() throws Exception {
+        WikidataElement universe = target.getElement("Q1");
+        assertThat(universe.getId(), is("Q1"));
+        assertThat(universe.getLabel(), is("universe"));
+        assertThat(universe.getProperties().keySet(), is(new HashSet<>(Arrays.asList("P31", "P580"))));
+        // the values which aren't features aren't kept
+        assertThat(universe.getProperties().get("P31"), is(Collections.<String>emptyList()));
+        assertThat(universe.getProperties().get("P580"), is(Collections.<String>emptyList()));
+
+        assertThat(target.getElementAsync("Q90").get().getLabel(), is("Paris; France"));
+        assertThat(target.getElement("P31"), is(nullValue()));
+        assertThat(target.getElement("Q2"), is(nullValue()));
+
+        Map<String, WikidataElement> elements = target.getElements(Arrays.asList("Q90", "Q2"));
+        assertThat(elements.size(), is(2));
+        assertThat(elements.get("Q90").getProperties().get("P31"), is(Collections.singletonList("Q515")));
+        assertThat(elements.get("Q2"), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStoreOfOtherFeatures() {
+        // the statements of P580 only aren't the ones of the features P580 and P31_Q515
+        new LmdbFetcherWrapper(directory, FeatureSchema.of(Collections.singletonList("P580"), Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testStoreOfAllStatements() throws Exception {
+        File allStatements = Files.createTempDirectory("lmdb").toFile();
+        try {
+            try (LmdbKnowledgeBaseBuilder builder = new LmdbKnowledgeBaseBuilder(allStatements, 16 << 20, null)) {
+                builder.load(new ByteArrayInputStream(DUMP.getBytes(UTF_8)));
+            }
+            // read whatever the features, all the values being kept
+            try (LmdbFetcherWrapper wrapper = new LmdbFetcherWrapper(allStatements, featureSchema)) {
+                assertThat(wrapper.getElement("Q90").getProperties().get("P31"), is(Arrays.asList("Q515", "Q5119")));
+            }
+        } finally {
+            FileUtils.deleteDirectory(allStatements);
+        }
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        WikidataElement element = new WikidataElement();
+        element.setId("Q42");
+        element.setLabel("Douglas Adams \u00e9");
+        Map<String, List<String>> properties = new HashMap<>();
+        properties.put("P31", Collections.singletonList("Q5"));
+        properties.put("P569", Arrays.asList("1952-03-11", null, "Q0", "Q007"));
+        element.setProperties(properties);
+        element.setPropertiesNoValue(Arrays.asList("P18", "label"));
+
+        byte[] bytes = WikidataElementCodec.encode(element);
+        WikidataElement decoded = WikidataElementCodec.decode("Q42", bytes);
+        assertThat(decoded.getId(), is("Q42"));
+        assertThat(decoded.getLabel(), is(element.getLabel()));
+        assertThat(decoded.getProperties(), is(properties));
+        assertThat(decoded.getPropertiesNoValue(), is(element.getPropertiesNoValue()));
+
+        element.setLabel(null);
+        element.setProperties(Collections.singletonMap("P31", Collections.singletonList("Q5")));
+        element.setPropertiesNoValue(Collections.emptyList());
+        bytes = WikidataElementCodec.encode(element);
+        // version, no label, a property, its Id, a value, the value, no property without value
+        assertThat(bytes.length, is(7));
+        assertThat(WikidataElementCodec.decode("Q42", bytes).getLabel(), is(nullValue()));
+    }
+}
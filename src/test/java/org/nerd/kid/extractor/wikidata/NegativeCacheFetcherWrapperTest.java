@@ -0,0 +1,115 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NegativeCacheFetcherWrapperTest {
+    private List<String> fetched;
+    private NegativeCacheFetcherWrapper target;
+
+    @Before
+    public void setUp() {
+        fetched = new ArrayList<>();
+        // Q1 is a human, Q2 has a property unknown by the schema, Q3 is an error of the service, the others are unknown
+        WikidataFetcherWrapper wrapper = wikiId -> {
+            fetched.add(wikiId);
+            if (wikiId.equals("Q3")) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            if (!wikiId.equals("Q1") && !wikiId.equals("Q2")) {
+                return null;
+            }
+            WikidataElement wikidataElement = new WikidataElement();
+            wikidataElement.setId(wikiId);
+            wikidataElement.setLabel("label of " + wikiId);
+            Map<String, List<String>> properties = new HashMap<>();
+            properties.put(wikiId.equals("Q1") ? "P31" : "P999999", Collections.singletonList("Q5"));
+            wikidataElement.setProperties(properties);
+            return wikidataElement;
+        };
+        target = new NegativeCacheFetcherWrapper(wrapper, 1, TimeUnit.HOURS, 1000);
+    }
+
+    @Test
+    public void testUnknownIdsAreCached() throws Exception {
+        assertThat(target.getElement("Q0"), is(nullValue()));
+        assertThat(target.getElement("Q0"), is(nullValue()));
+        assertThat(fetched, is(Collections.singletonList("Q0")));
+    }
+
+    @Test
+    public void testFeaturelessIdsAreCached() throws Exception {
+        target.getElement("Q2");
+        WikidataElement result = target.getElement("Q2");
+        assertThat(result.getLabel(), is("label of Q2"));
+        assertThat(result.getProperties().isEmpty(), is(true));
+        assertThat(fetched.size(), is(1));
+
+        // the elements with some features are always fetched
+        target.getElement("Q1");
+        target.getElement("Q1");
+        assertThat(fetched.size(), is(3));
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try {
+                target.getElement("Q3");
+                fail("The error of the service must be thrown");
+            } catch (RemoteServiceException e) {
+                // expected
+            }
+        }
+        assertThat(fetched.size(), is(2));
+        assertThat(target.negativeCacheSize(), is(0L));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        assertThat(target.getElementAsync("Q0").get(), is(nullValue()));
+        assertThat(target.getElementAsync("Q0").isDone(), is(true));
+        assertThat(target.getElementAsync("Q1").get().getLabel(), is("label of Q1"));
+        assertThat(fetched.size(), is(2));
+
+        try {
+            target.getElementAsync("Q3").get();
+            fail("The error of the service must complete the future");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause() instanceof RemoteServiceException, is(true));
+        }
+    }
+
+    @Test
+    public void testBloomFilter() throws Exception {
+        BloomFilter<CharSequence> validIds = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), 100, 0.001);
+        validIds.put("Q1");
+        target = new NegativeCacheFetcherWrapper(wikiId -> {
+            fetched.add(wikiId);
+            return null;
+        }, 1, TimeUnit.HOURS, 1000, validIds);
+
+        assertThat(target.getElement("Q42"), is(nullValue()));
+        assertThat(fetched.isEmpty(), is(true));
+        target.getElement("Q1");
+        assertThat(fetched, is(Collections.singletonList("Q1")));
+    }
+}
@@ -1,24 +1,66 @@
 package org.nerd.kid.extractor.wikidata;
 
+import com.sun.net.httpserver.HttpServer;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+import org.nerd.kid.service.SharedHttpClient;
 
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class NerdKBFetcherWrapperTest {
 
     NerdKBFetcherWrapper target;
+    HttpServer server;
+    // remote ports of the connections of the client
+    Set<Integer> connections = new HashSet<>();
 
     @Before
     public void setUp() throws Exception {
         target = new NerdKBFetcherWrapper();
+
+        /* stand-in of the knowledge base of entity-fishing: Q1234 is known, Q500 is an error of the service, Q200 is
+        a truncated response and Q42 the response of another Id
+        */
+        byte[] q1234 = IOUtils.toByteArray(this.getClass().getResourceAsStream("/Q1234.json"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/service/kb/concept/", exchange -> {
+            connections.add(exchange.getRemoteAddress().getPort());
+            String wikiId = exchange.getRequestURI().getPath().substring("/service/kb/concept/".length());
+            int status = wikiId.equals("Q1234") || wikiId.equals("Q200") || wikiId.equals("Q42") ? 200
+                    : wikiId.equals("Q500") ? 500 : 404;
+            byte[] body = wikiId.equals("Q200") ? Arrays.copyOf(q1234, q1234.length / 2)
+                    : status == 200 ? q1234 : "{}".getBytes(UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
     }
 
     @Test
@@ -32,4 +74,43 @@ public class NerdKBFetcherWrapperTest {
         //assertThat(element.getProperties().get("P31").get(0), is("Q11344"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetElement() throws Exception {
+        try (CloseableHttpClient client = SharedHttpClient.create(4, 4, 1000, 1000, 30000)) {
+            NerdKBFetcherWrapper fetcher = new NerdKBFetcherWrapper(
+                    "http://localhost:" + server.getAddress().getPort() + "/service/kb/concept", client);
+
+            for (int i = 0; i < 5; i++) {
+                assertThat(fetcher.getElement("Q1234").getLabel(), is("Seaborgium"));
+                assertThat(fetcher.getElement("Q0"), is(nullValue()));
+            }
+            // only the statements of the properties of the feature schema are kept
+            WikidataElement element = fetcher.getElement("Q1234");
+            assertThat(element.getProperties().keySet(), is(new HashSet<>(Arrays.asList("P31", "P279", "P1086"))));
+            assertThat(element.getProperties().get("P31"), is(Collections.singletonList("Q11344")));
+            // the connection is kept alive
+            assertThat(connections, hasSize(1));
+
+            // the asynchronous fetches go through the limiter the same way
+            assertThat(fetcher.getElementAsync("Q1234").get(5, TimeUnit.SECONDS).getLabel(), is("Seaborgium"));
+            assertThat(fetcher.getElementAsync("Q0").get(5, TimeUnit.SECONDS), is(nullValue()));
+            try {
+                fetcher.getElementAsync("Q500").get(5, TimeUnit.SECONDS);
+                fail("The error of the service must be thrown");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause() instanceof RemoteServiceException, is(true));
+            }
+
+            // the errors and the responses which can't be read aren't taken for an unknown Id
+            for (String wikiId : Arrays.asList("Q500", "Q200", "Q42")) {
+                try {
+                    fetcher.getElement(wikiId);
+                    fail("The error of the service must be thrown for " + wikiId);
+                } catch (RemoteServiceException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+import org.nerd.kid.service.CircuitBreaker;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ResilientFetcherWrapperTest {
+    private ScheduledExecutorService scheduler;
+    private AtomicInteger fetches;
+    // number of errors of the service before it answers again
+    private AtomicInteger errors;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newScheduledThreadPool(2);
+        fetches = new AtomicInteger();
+        errors = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private WikidataFetcherWrapper service(String name, long delayMillis) {
+        return wikiId -> {
+            fetches.incrementAndGet();
+            Thread.sleep(delayMillis);
+            if (errors.getAndDecrement() > 0) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            return element(wikiId, name);
+        };
+    }
+
+    @Test
+    public void testRetries() throws Exception {
+        errors.set(2);
+        ResilientFetcherWrapper target = new ResilientFetcherWrapper("test-retries", service("primary", 0), scheduler)
+                .retries(2, 1, 10, TimeUnit.MILLISECONDS);
+
+        assertThat(target.getElement("Q1").getLabel(), is("primary"));
+        assertThat(fetches.get(), is(3));
+    }
+
+    @Test
+    public void testGetElementsRetriesAndTimesOutEveryId() throws Exception {
+        errors.set(2);
+        WikidataFetcherWrapper service = service("primary", 0);
+        // Q9 is slower than the timeout
+        WikidataFetcherWrapper primary = wikiId -> {
+            if (wikiId.equals("Q9")) {
+                Thread.sleep(2000);
+            }
+            return service.getElement(wikiId);
+        };
+        ResilientFetcherWrapper target = new ResilientFetcherWrapper("test-batch", primary, scheduler)
+                .retries(2, 1, 10, TimeUnit.MILLISECONDS)
+                .timeout(200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        Map<String, WikidataElement> elements = target.getElements(Arrays.asList("Q1", "Q2", "Q9"));
+        // the errors of the service are retried, the Id which times out isn't waited for
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500, is(true));
+        assertThat(elements.keySet(), is(new HashSet<>(Arrays.asList("Q1", "Q2"))));
+        assertThat(elements.get("Q1").getLabel(), is("primary"));
+    }
+
+    @Test
+    public void testCircuitBreakerServesStaleElements() throws Exception {
+        ResilientFetcherWrapper target = new ResilientFetcherWrapper("test-circuit", service("primary", 0), scheduler)
+                .retries(0, 1, 1, TimeUnit.MILLISECONDS)
+                .circuitBreaker(new CircuitBreaker(2, 1, TimeUnit.HOURS));
+        target.getElement("Q1");
+
+        errors.set(Integer.MAX_VALUE);
+        // the stale element is given when the fetch fails
+        assertThat(target.getElement("Q1").getLabel(), is("primary"));
+        try {
+            target.getElement("Q2");
+            fail("The error of the service must be thrown");
+        } catch (RemoteServiceException e) {
+            // expected
+        }
+        assertThat(target.getCircuitState(), is(CircuitBreaker.State.OPEN));
+
+        // the service isn't called any more
+        int nbFetches = fetches.get();
+        assertThat(target.getElement("Q1").getLabel(), is("primary"));
+        try {
+            target.getElement("Q3");
+            fail("The circuit is open");
+        } catch (RemoteServiceException e) {
+            // expected
+        }
+        assertThat(fetches.get(), is(nbFetches));
+    }
+
+    @Test
+    public void testHedgeToTheReplica() throws Exception {
+        AtomicInteger delay = new AtomicInteger(0);
+        WikidataFetcherWrapper primary = wikiId -> {
+            Thread.sleep(delay.get());
+            return element(wikiId, "primary");
+        };
+        ResilientFetcherWrapper target = new ResilientFetcherWrapper("test-hedge", primary, scheduler)
+                .hedge(service("replica", 0), 1, TimeUnit.MILLISECONDS);
+        // latencies of the primary service, fast
+        for (int i = 0; i < 100; i++) {
+            target.getElement("Q" + i);
+        }
+        assertThat(fetches.get(), is(0));
+
+        delay.set(2000);
+        assertThat(target.getElementAsync("Q1").get(1, TimeUnit.SECONDS).getLabel(), is("replica"));
+        assertThat(fetches.get(), is(1));
+    }
+
+    private static WikidataElement element(String wikiId, String label) {
+        WikidataElement wikidataElement = new WikidataElement();
+        wikidataElement.setId(wikiId);
+        wikidataElement.setLabel(label);
+        wikidataElement.setProperties(new HashMap<>());
+        return wikidataElement;
+    }
+}
@@ -0,0 +1,80 @@
+package org.nerd.kid.extractor.wikidata;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.exception.RemoteServiceException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SingleFlightFetcherWrapperTest {
+    private AtomicInteger fetches;
+    private CountDownLatch release;
+    private SingleFlightFetcherWrapper target;
+
+    @Before
+    public void setUp() {
+        fetches = new AtomicInteger();
+        release = new CountDownLatch(1);
+        // the fetches wait for the release, Q3 is an error of the service
+        target = new SingleFlightFetcherWrapper(wikiId -> {
+            fetches.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            if (wikiId.equals("Q3")) {
+                throw new RemoteServiceException("Remote service exception.");
+            }
+            WikidataElement wikidataElement = new WikidataElement();
+            wikidataElement.setId(wikiId);
+            wikidataElement.setProperties(new HashMap<>());
+            return wikidataElement;
+        });
+    }
+
+    @Test
+    public void testConcurrentFetchesAreShared() throws Exception {
+        long coalesced = target.coalesced();
+        List<CompletableFuture<WikidataElement>> elements = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            elements.add(target.getElementAsync("Q1"));
+        }
+        release.countDown();
+
+        for (CompletableFuture<WikidataElement> element : elements) {
+            assertThat(element.get(5, TimeUnit.SECONDS), is(sameInstance(elements.get(0).get())));
+        }
+        assertThat(fetches.get(), is(1));
+        assertThat(target.coalesced() - coalesced, is(4L));
+
+        // fetched again once the fetch is over
+        target.getElement("Q1");
+        assertThat(fetches.get(), is(2));
+    }
+
+    @Test
+    public void testErrorsAreShared() throws Exception {
+        CompletableFuture<WikidataElement> first = target.getElementAsync("Q3");
+        CompletableFuture<WikidataElement> second = target.getElementAsync("Q3");
+        release.countDown();
+        for (CompletableFuture<WikidataElement> element : new CompletableFuture[]{first, second}) {
+            try {
+                element.get(5, TimeUnit.SECONDS);
+                fail("The error of the service must complete the future");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause() instanceof RemoteServiceException, is(true));
+            }
+        }
+        assertThat(fetches.get(), is(1));
+    }
+}
@@ -0,0 +1,124 @@
+package org.nerd.kid.extractor.wikidata;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.extractor.FeatureSchema;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
+import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WikibaseWrapperTest {
+    // the answer of wbgetentities: an item with a label to clean and three properties, a missing item
+    private static final String ENTITIES = "{\"entities\":{"
+            + "\"Q90\":{\"type\":\"item\",\"id\":\"Q90\",\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Paris, France\"}},\"claims\":{"
+            + "\"P31\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":515},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\",\"id\":\"Q90$1\",\"rank\":\"normal\"},"
+            + "{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P31\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":5119},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\",\"id\":\"Q90$2\",\"rank\":\"normal\"}],"
+            + "\"P17\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P17\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":142},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\",\"id\":\"Q90$3\",\"rank\":\"normal\"}],"
+            + "\"P36\":[{\"mainsnak\":{\"snaktype\":\"value\",\"property\":\"P36\",\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":90},\"type\":\"wikibase-entityid\"},\"datatype\":\"wikibase-item\"},\"type\":\"statement\",\"id\":\"Q90$4\",\"rank\":\"normal\"}]}},"
+            + "\"Q404\":{\"id\":\"Q404\",\"missing\":\"\"}"
+            + "},\"success\":1}";
+
+    private HttpServer server;
+    private List<String> requests;
+    private WikibaseWrapper target;
+    // the tasks of the asynchronous fetches, run by the test
+    private List<Runnable> tasks;
+
+    @Before
+    public void setUp() throws Exception {
+        requests = new CopyOnWriteArrayList<>();
+        // a local stand-in of the Wikidata API
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/w/api.php", exchange -> {
+            String query = exchange.getRequestURI().getRawQuery();
+            String body = IOUtils.toString(exchange.getRequestBody(), UTF_8);
+            requests.add(URLDecoder.decode((query == null ? "" : query) + "&" + body, "UTF-8"));
+            byte[] response = ENTITIES.getBytes(UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(response);
+            }
+        });
+        server.start();
+
+        String apiUrl = "http://localhost:" + server.getAddress().getPort() + "/w/api.php";
+        // the features P17 and P31_Q515 only
+        FeatureSchema featureSchema = FeatureSchema.of(Collections.singletonList("P17"), Collections.singletonList("P31_Q515"));
+        tasks = new ArrayList<>();
+        target = new WikibaseWrapper(new WikibaseDataFetcher(new ApiConnection(apiUrl), Datamodel.SITE_WIKIDATA), featureSchema, tasks::add);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    @Test
+    public void testGetElements() throws Exception {
+        Map<String, WikidataElement> elements = target.getElements(Arrays.asList("Q90", "Q404"));
+
+        // a single request for the chunk, asking for the English label and the claims only
+        assertThat(requests.size(), is(1));
+        String request = requests.get(0);
+        assertThat(request, containsString("ids=Q90|Q404"));
+        assertThat(request, containsString("languages=en"));
+        assertThat(request, containsString("claims"));
+        assertThat(request, not(containsString("sitelinks")));
+
+        assertThat(elements.size(), is(2));
+        WikidataElement paris = elements.get("Q90");
+        assertThat(paris.getId(), is("Q90"));
+        assertThat(paris.getLabel(), is("Paris_ France"));
+        // the claims which aren't features aren't kept
+        assertThat(paris.getProperties().keySet(), is(new HashSet<>(Arrays.asList("P17", "P31"))));
+        assertThat(paris.getProperties().get("P31"), is(Collections.singletonList("Q515")));
+        assertThat(paris.getProperties().get("P17"), is(Collections.<String>emptyList()));
+        assertThat(new HashSet<>(paris.getPropertiesNoValue()), is(paris.getProperties().keySet()));
+        assertThat(elements.get("Q404"), is(nullValue()));
+
+        assertThat(target.getElement("Q404"), is(nullValue()));
+        assertThat(requests.size(), is(2));
+    }
+
+    @Test
+    public void testGetElementAsync() throws Exception {
+        CompletableFuture<WikidataElement> paris = target.getElementAsync("Q90");
+        CompletableFuture<WikidataElement> missing = target.getElementAsync("Q404");
+        CompletableFuture<WikidataElement> parisAgain = target.getElementAsync("Q90");
+        assertThat(paris.isDone(), is(false));
+
+        // the first task sends the Ids queued in a single request, the others have nothing left to send
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertThat(requests.size(), is(1));
+        assertThat(requests.get(0), containsString("ids=Q90|Q404"));
+        assertThat(paris.get().getLabel(), is("Paris_ France"));
+        assertThat(parisAgain.get().getId(), is("Q90"));
+        assertThat(missing.get(), is(nullValue()));
+    }
+}
@@ -0,0 +1,93 @@
+package org.nerd.kid.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.FeatureVector;
+import org.nerd.kid.exception.NerdKidException;
+import org.nerd.kid.extractor.ClassExtractor;
+import org.nerd.kid.extractor.FeatureSchema;
+import smile.classification.RandomForest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BinaryModelTest {
+    private RandomForest forest;
+    private BinaryModel target;
+
+    @Before
+    public void setUp() throws Exception {
+        forest = new WikidataNERPredictor(null, ForestEngineType.SMILE).getForest();
+        target = BinaryModel.fromForest(forest, FeatureSchema.getInstance(), ClassExtractor.classMap);
+    }
+
+    @Test
+    public void testWriteAndMap() throws Exception {
+        File file = File.createTempFile("model", ".bin");
+        file.deleteOnExit();
+        target.write(file);
+
+        BinaryModel result = BinaryModel.read(file.toPath());
+        assertThat(result.getClasses(), is(ClassExtractor.classMap));
+        assertThat(result.getFeatureSchema().getFeatures(), is(FeatureSchema.getInstance().getFeatures()));
+        assertThat(result.getTreeWeights(), is(target.getTreeWeights()));
+        result.checkCompatible(FeatureSchema.getInstance(), ClassExtractor.classMap);
+
+        // the same predictions as the model of Smile
+        FlatForest flatForest = result.getForest();
+        Random random = new Random(42);
+        int nbFeatures = FeatureSchema.getInstance().size();
+        for (int i = 0; i < 1000; i++) {
+            double[] x = new double[nbFeatures];
+            for (int j = 0; j < 1 + random.nextInt(6); j++) {
+                x[random.nextInt(nbFeatures)] = 1.0;
+            }
+            assertThat(flatForest.predict(FeatureVector.fromArray(x)), is(forest.predict(x)));
+        }
+    }
+
+    @Test
+    public void testBundledModelIsUpToDate() throws Exception {
+        BinaryModel bundled = BinaryModel.read(WikidataNERPredictor.class.getResourceAsStream("model.bin"));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        target.write(expected);
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        bundled.write(result);
+        assertThat(Arrays.equals(result.toByteArray(), expected.toByteArray()), is(true));
+    }
+
+    @Test(expected = NerdKidException.class)
+    public void testCorruptedModel() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        target.write(output);
+        byte[] bytes = output.toByteArray();
+        bytes[bytes.length / 2] ^= 1;
+        BinaryModel.read(ByteBuffer.wrap(bytes));
+    }
+
+    @Test(expected = NerdKidException.class)
+    public void testOtherSchema() throws Exception {
+        FeatureSchema schema = FeatureSchema.getInstance();
+        FeatureSchema otherSchema = FeatureSchema.of(schema.getFeaturesNoValue().subList(1, schema.sizeNoValue()), schema.getFeatures());
+        target.checkCompatible(otherSchema, ClassExtractor.classMap);
+    }
+
+    // a model given with -Dnerdkid.model which can't be used doesn't fall back to the bundled model
+    @Test(expected = NerdKidException.class)
+    public void testCorruptedModelGiven() throws Exception {
+        File file = File.createTempFile("model", ".bin");
+        file.deleteOnExit();
+        target.write(file);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+        SharedModels.loadBinaryModel(file.getPath());
+    }
+}
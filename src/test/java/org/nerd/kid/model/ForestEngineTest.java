@@ -0,0 +1,162 @@
+package org.nerd.kid.model;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nerd.kid.data.FeatureMatrix;
+import org.nerd.kid.data.FeatureVector;
+import org.nerd.kid.extractor.FeatureSchema;
+import smile.classification.RandomForest;
+import smile.data.AttributeDataset;
+import smile.data.parser.ArffParser;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ForestEngineTest {
+    static double[][] datax;
+    static RandomForest sampleForest;
+    static RandomForest bundledForest;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // the last attribute of the sample is the class
+        AttributeDataset dataset = new ArffParser().setResponseIndex(337).parse(ForestEngineTest.class.getResourceAsStream("/sample.arff"));
+        datax = dataset.toArray(new double[dataset.size()][]);
+        int[] datay = dataset.toArray(new int[dataset.size()]);
+        sampleForest = new RandomForest(dataset.attributes(), datax, datay, 50);
+
+        bundledForest = new WikidataNERPredictor(null).getForest();
+    }
+
+    @Test
+    public void testFlatEngineOnSample() throws Exception {
+        assertSamePredictions(ForestEngineType.FLAT.create(sampleForest), sampleForest);
+    }
+
+    @Test
+    public void testFlatEngineOnBundledModel() throws Exception {
+        assertSamePredictionsRandom(ForestEngineType.FLAT.create(bundledForest), bundledForest);
+    }
+
+    @Test
+    public void testQuickScorerEngineOnSample() throws Exception {
+        assertSamePredictions(ForestEngineType.QUICKSCORER.create(sampleForest), sampleForest);
+    }
+
+    @Test
+    public void testQuickScorerEngineOnBundledModel() throws Exception {
+        assertSamePredictionsRandom(ForestEngineType.QUICKSCORER.create(bundledForest), bundledForest);
+    }
+
+    @Test
+    public void testGeneratedEngineOnSample() throws Exception {
+        ForestEngine engine = ForestEngineType.GENERATED.create(sampleForest);
+        assertThat(engine instanceof GeneratedForestEngine, is(true));
+        assertSamePredictions(engine, sampleForest);
+    }
+
+    @Test
+    public void testGeneratedEngineOnBundledModel() throws Exception {
+        ForestEngine engine = ForestEngineType.GENERATED.create(bundledForest);
+        assertThat(engine instanceof GeneratedForestEngine, is(true));
+        assertSamePredictionsRandom(engine, bundledForest);
+    }
+
+    @Test
+    public void testEarlyExitEngineOnBundledModel() throws Exception {
+        EarlyExitForest engine = (EarlyExitForest) ForestEngineType.EARLY_EXIT.create(bundledForest);
+        assertSamePredictionsRandom(engine, bundledForest);
+        assertThat(engine.getTreesEvaluated().getCount(), is(2000L));
+        assertThat(engine.getTreesEvaluated().getSnapshot().getMax() <= bundledForest.size(), is(true));
+    }
+
+    @Test
+    public void testEarlyExitEngineWithConfidence() throws Exception {
+        EarlyExitForest engine = new EarlyExitForest(ForestCompiler.compile(sampleForest, true), 0.9, 10);
+        // a unanimous vote stops after the minimum number of trees
+        for (double[] x : datax) {
+            int[] votes = new int[engine.numberOfClasses()];
+            int prediction = engine.predict(FeatureVector.fromArray(x), votes);
+            int earlyPrediction = engine.predict(FeatureVector.fromArray(x));
+            if (votes[prediction] == engine.size()) {
+                assertThat(earlyPrediction, is(prediction));
+            }
+        }
+        // no prediction of this engine stops before the minimum number of trees
+        assertThat(engine.getTreesEvaluated().getCount(), is((long) datax.length));
+        assertThat(engine.getTreesEvaluated().getSnapshot().getMin() >= 10, is(true));
+    }
+
+    @Test
+    public void testBatchPredictions() throws Exception {
+        // more rows than a single task of the fork/join, so that the batch is split
+        double[][] rows = new double[3 * ForestBatchTask.THRESHOLD][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = datax[i % datax.length];
+        }
+        FeatureMatrix features = FeatureMatrix.fromArrays(rows);
+        for (ForestEngineType engineType : ForestEngineType.values()) {
+            int[] predictions = engineType.create(sampleForest).predict(features);
+            for (int i = 0; i < rows.length; i++) {
+                assertThat(predictions[i], is(sampleForest.predict(rows[i])));
+            }
+        }
+    }
+
+    @Test
+    public void testSmileBatchOnBundledModel() throws Exception {
+        // sparse random rows, more than a block of the Smile engine
+        Random random = new Random(42);
+        int nbFeatures = FeatureSchema.getInstance().size();
+        double[][] rows = new double[ForestBatchTask.THRESHOLD + 10][nbFeatures];
+        for (double[] x : rows) {
+            for (int j = 1 + random.nextInt(6); j > 0; j--) {
+                x[random.nextInt(nbFeatures)] = 1.0;
+            }
+        }
+        int[] predictions = new int[rows.length];
+        ForestEngineType.SMILE.create(bundledForest).predict(FeatureMatrix.fromArrays(rows), 0, rows.length, predictions);
+        for (int i = 0; i < rows.length; i++) {
+            assertThat(predictions[i], is(bundledForest.predict(rows[i])));
+        }
+    }
+
+    @Test
+    public void testVotes() throws Exception {
+        ForestEngine reference = ForestEngineType.SMILE.create(sampleForest);
+        int[] expectedVotes = new int[reference.numberOfClasses()];
+        int[] votes = new int[reference.numberOfClasses()];
+        for (ForestEngineType engineType : ForestEngineType.values()) {
+            ForestEngine engine = engineType.create(sampleForest);
+            for (double[] x : datax) {
+                FeatureVector features = FeatureVector.fromArray(x);
+                reference.predict(features, expectedVotes);
+                assertThat(engine.predict(features, votes), is(sampleForest.predict(x)));
+                assertThat(votes, is(expectedVotes));
+            }
+        }
+    }
+
+    private void assertSamePredictions(ForestEngine engine, RandomForest forest) {
+        assertThat(engine.size(), is(forest.size()));
+        for (double[] x : datax) {
+            assertThat(engine.predict(FeatureVector.fromArray(x)), is(forest.predict(x)));
+        }
+    }
+
+    // sparse random vectors, as the entities have few features
+    private void assertSamePredictionsRandom(ForestEngine engine, RandomForest forest) {
+        Random random = new Random(42);
+        int nbFeatures = FeatureSchema.getInstance().size();
+        for (int i = 0; i < 2000; i++) {
+            double[] x = new double[nbFeatures];
+            int nbSet = 1 + random.nextInt(6);
+            for (int j = 0; j < nbSet; j++) {
+                x[random.nextInt(nbFeatures)] = 1.0;
+            }
+            assertThat(engine.predict(FeatureVector.fromArray(x)), is(forest.predict(x)));
+        }
+    }
+}
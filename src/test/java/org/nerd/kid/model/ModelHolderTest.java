@@ -0,0 +1,66 @@
+package org.nerd.kid.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.exception.NerdKidException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ModelHolderTest {
+    private ModelHolder target;
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        target = ModelHolder.shared(ForestEngineType.FLAT);
+        directory = Files.createTempDirectory("models");
+        directory.toFile().deleteOnExit();
+    }
+
+    @Test
+    public void testLoadAndRollback() throws Exception {
+        LoadedModel bundled = target.current();
+        File modelBin = directory.resolve(ModelHolder.MODEL_BIN).toFile();
+        modelBin.deleteOnExit();
+        SharedModels.binaryModel().write(modelBin);
+
+        LoadedModel reloaded = target.loadFromDirectory(directory);
+        assertThat(target.current(), is(reloaded));
+        assertThat(target.previous(), is(bundled));
+        // the same trees, the same version
+        assertThat(reloaded.getVersion(), is(bundled.getVersion()));
+        assertThat(reloaded.getEngine(), is(not(bundled.getEngine())));
+
+        assertThat(target.rollback(), is(bundled));
+        assertThat(target.engine(), is(bundled.getEngine()));
+    }
+
+    @Test
+    public void testCorruptedModelIsRejected() throws Exception {
+        LoadedModel bundled = target.current();
+        File modelBin = directory.resolve(ModelHolder.MODEL_BIN).toFile();
+        modelBin.deleteOnExit();
+        try (FileOutputStream outputStream = new FileOutputStream(modelBin)) {
+            SharedModels.binaryModel().write(outputStream);
+            outputStream.write(0);
+        }
+
+        try {
+            target.loadFromDirectory(directory);
+            fail("A corrupted model must be rejected");
+        } catch (NerdKidException e) {
+            // expected, the current model is kept
+        }
+        assertThat(target.current(), is(bundled));
+        assertThat(target.previous(), is(nullValue()));
+    }
+}
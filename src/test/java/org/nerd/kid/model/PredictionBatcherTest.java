@@ -0,0 +1,95 @@
+package org.nerd.kid.model;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.data.WikidataElementInfos;
+import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PredictionBatcherTest {
+    private List<Integer> batches;
+    private PredictionBatcher target;
+
+    @Before
+    public void setUp() {
+        batches = Collections.synchronizedList(new ArrayList<>());
+        // element of a human (P31 - Q5) for every Id, except 'Q0' which can't be found
+        WikidataFetcherWrapper wrapper = new WikidataFetcherWrapper() {
+            @Override
+            public WikidataElement getElement(String wikiId) {
+                return wikiId.equals("Q0") ? null : human(wikiId);
+            }
+
+            @Override
+            public Map<String, WikidataElement> getElements(Collection<String> wikiIds) {
+                batches.add(wikiIds.size());
+                Map<String, WikidataElement> elements = new HashMap<>();
+                for (String wikiId : wikiIds) {
+                    elements.put(wikiId, getElement(wikiId));
+                }
+                return elements;
+            }
+        };
+        WikidataNERPredictor predictor = new WikidataNERPredictor(wrapper, ModelHolder.shared(ForestEngineType.FLAT));
+        target = new PredictionBatcher(predictor, 1, TimeUnit.SECONDS, 5, MoreExecutors.directExecutor());
+    }
+
+    @After
+    public void tearDown() {
+        target.close();
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        List<CompletableFuture<WikidataElementInfos>> predictions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            predictions.add(target.predict("Q" + i));
+        }
+
+        assertThat(predictions.get(0).get(5, TimeUnit.SECONDS).getPredictedClass(), is(nullValue()));
+        for (int i = 1; i < 10; i++) {
+            WikidataElementInfos prediction = predictions.get(i).get(5, TimeUnit.SECONDS);
+            assertThat(prediction.getWikidataId(), is("Q" + i));
+            assertThat(prediction.getPredictedClass(), is("PERSON"));
+        }
+        // full batches, sent without waiting for the end of the window
+        assertThat(batches, is(Arrays.asList(5, 5)));
+    }
+
+    @Test
+    public void testPendingPredictionsAreSentOnClose() throws Exception {
+        CompletableFuture<WikidataElementInfos> prediction = target.predict("Q1");
+        target.close();
+        assertThat(prediction.isDone(), is(true));
+        assertThat(prediction.get().getPredictedClass(), is("PERSON"));
+        // not batched any more
+        assertThat(target.predict("Q2").get(5, TimeUnit.SECONDS).getPredictedClass(), is("PERSON"));
+        assertThat(batches.size(), is(1));
+    }
+
+    private static WikidataElement human(String wikiId) {
+        WikidataElement wikidataElement = new WikidataElement();
+        wikidataElement.setId(wikiId);
+        wikidataElement.setLabel("label of " + wikiId);
+        Map<String, List<String>> properties = new HashMap<>();
+        properties.put("P31", Collections.singletonList("Q5"));
+        wikidataElement.setProperties(properties);
+        return wikidataElement;
+    }
+}
@@ -0,0 +1,125 @@
+package org.nerd.kid.model;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.data.WikidataElementInfos;
+import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PredictionCacheTest {
+    private AtomicInteger fetches;
+    private CountDownLatch fetching;
+    private WikidataNERPredictor predictor;
+    private PredictionCache target;
+
+    @Before
+    public void setUp() {
+        fetches = new AtomicInteger();
+        fetching = new CountDownLatch(0);
+        // element of a human (P31 - Q5) for every Id, except 'Q0' which can't be found
+        WikidataFetcherWrapper wrapper = wikiId -> {
+            fetches.incrementAndGet();
+            fetching.await();
+            if (wikiId.equals("Q0")) {
+                return null;
+            }
+            WikidataElement wikidataElement = new WikidataElement();
+            wikidataElement.setId(wikiId);
+            wikidataElement.setLabel("label of " + wikiId);
+            Map<String, List<String>> properties = new HashMap<>();
+            properties.put("P31", Collections.singletonList("Q5"));
+            properties.put("P21", Arrays.asList("Q6581097"));
+            wikidataElement.setProperties(properties);
+            return wikidataElement;
+        };
+        predictor = new WikidataNERPredictor(wrapper, ModelHolder.shared(ForestEngineType.FLAT));
+        target = new PredictionCache(predictor, 100, 1024 * 1024, 1, 1, TimeUnit.HOURS, MoreExecutors.directExecutor());
+    }
+
+    @Test
+    public void testReadThrough() {
+        WikidataElementInfos result = target.predict("Q1");
+        assertThat(result.getPredictedClass(), is("PERSON"));
+        assertThat(target.predict("Q1"), is(sameInstance(result)));
+        assertThat(fetches.get(), is(1));
+
+        // the scores are another prediction
+        WikidataElementInfos scores = target.predict("Q1", 3);
+        assertThat(scores.getTopClasses().get(0), is("PERSON"));
+        assertThat(fetches.get(), is(2));
+        assertThat(target.stats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void testPredictionWithoutClassIsNotKept() {
+        assertThat(target.predict("Q0").getPredictedClass(), is(nullValue()));
+        target.predict("Q0");
+        assertThat(fetches.get(), is(2));
+        assertThat(target.size(), is(0L));
+    }
+
+    @Test
+    public void testConcurrentMissesArePredictedOnce() throws Exception {
+        fetching = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<WikidataElementInfos> first = executor.submit(() -> target.predict("Q1"));
+            Future<WikidataElementInfos> second = executor.submit(() -> target.predict("Q1"));
+            Thread.sleep(100);
+            fetching.countDown();
+            assertThat(second.get(), is(sameInstance(first.get())));
+            assertThat(fetches.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testClearedWhenTheModelIsReplaced() {
+        WikidataElementInfos result = target.predict("Q1");
+        predictor.setModel(SharedModels.binaryModel());
+        assertThat(target.size(), is(0L));
+        assertThat(target.predict("Q1"), is(not(sameInstance(result))));
+        assertThat(fetches.get(), is(2));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        target = new PredictionCache(predictor, 100, 1024 * 1024, TimeUnit.HOURS.toMillis(1), 1, TimeUnit.MILLISECONDS,
+                MoreExecutors.directExecutor());
+        target.predict("Q1");
+        Thread.sleep(5);
+        // still in the cache, predicted again in the background
+        assertThat(target.predict("Q1").getPredictedClass(), is("PERSON"));
+        assertThat(fetches.get(), is(2));
+        assertThat(target.stats().hitCount(), is(1L));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        for (int i = 1; i <= 1000; i++) {
+            target.predict("Q" + i);
+        }
+        assertThat(target.size() <= 100, is(true));
+        assertThat(target.stats().evictionCount() >= 900, is(true));
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.nerd.kid.data.WikidataElement;
+import org.nerd.kid.data.WikidataElementInfos;
 import org.nerd.kid.extractor.wikidata.NerdKBFetcherWrapper;
 import org.nerd.kid.extractor.wikidata.NerdKBLocalFetcherWrapper;
 import org.nerd.kid.extractor.wikidata.WikidataFetcherWrapper;
@@ -118,6 +119,43 @@ public class WikidataNERPredictorTest {
 
     }
 
+    // the compiled engines load the binary model, with the same predictions as the model of Smile
+    @Test
+    public void predictWikidataElementWithBinaryModel() {
+        WikidataNERPredictor predictor = new WikidataNERPredictor(wrapper1, ForestEngineType.FLAT);
+        assertThat(predictor.getForest(), is(IsNull.nullValue()));
+
+        wikidataElement.setId("Q76"); // Barack Obama (Class: PERSON)
+        properties.put("P21", Arrays.asList("Q6581097"));
+        properties.put("P31", Arrays.asList("Q5"));
+        wikidataElement.setProperties(properties);
+        assertThat(predictor.predict(wikidataElement).getPredictedClass(), is("PERSON"));
+    }
+
+    // the scores come with the prediction: the predicted class is the first of the top classes
+    @Test
+    public void predictWikidataElementWithScores() {
+        wikidataElement.setId("Q76"); // Barack Obama (Class: PERSON)
+        properties.put("P21", Arrays.asList("Q6581097"));
+        properties.put("P31", Arrays.asList("Q5"));
+        wikidataElement.setProperties(properties);
+        WikidataElementInfos result = wikidataNERPredictor1.predict(wikidataElement, 3);
+
+        assertThat(result.getPredictedClass(), is("PERSON"));
+        assertThat(result.getTopClasses().size() <= 3, is(true));
+        assertThat(result.getTopClasses().get(0), is("PERSON"));
+        // the classes without any vote aren't top classes
+        List<String> allClasses = wikidataNERPredictor1.predict(wikidataElement, 100).getTopClasses();
+        assertThat(allClasses, is(new ArrayList<>(result.getClassDistribution().keySet())));
+        double total = 0;
+        for (double share : result.getClassDistribution().values()) {
+            total += share;
+        }
+        assertThat(Math.abs(total - 1.0) < 1e-9, is(true));
+        assertThat(result.getMargin() >= 0 && result.getMargin() <= 1, is(true));
+        assertThat(wikidataNERPredictor1.predict(wikidataElement).getClassDistribution(), is(IsNull.nullValue()));
+    }
+
     // test if a map containing properties with values is null
     @Test
     @Ignore("Predicted as LOCATION")
@@ -131,4 +169,31 @@ public class WikidataNERPredictorTest {
         assertThat(predictionResult, is("INSTALLATION"));
 
     }
-}
\ No newline at end of file
+
+    // a batch gives the same classes as the elements predicted one by one, the element without any feature being OTHER
+    @Test
+    public void predictBatchWikidataElements() {
+        WikidataElement capeVerde = new WikidataElement();
+        capeVerde.setId("Q1011");
+        capeVerde.setPropertiesNoValue(Arrays.asList("P1566", "P30", "P36"));
+        capeVerde.setProperties(Collections.singletonMap("P31", Arrays.asList("Q6256")));
+
+        WikidataElement barackObama = new WikidataElement();
+        barackObama.setId("Q76");
+        Map<String, List<String>> propertiesObama = new HashMap<>();
+        propertiesObama.put("P21", Arrays.asList("Q6581097"));
+        propertiesObama.put("P31", Arrays.asList("Q5"));
+        barackObama.setProperties(propertiesObama);
+
+        WikidataElement noFeature = new WikidataElement();
+        noFeature.setId("Q0");
+
+        List<WikidataElementInfos> results = wikidataNERPredictor1.predictBatch(Arrays.asList(capeVerde, noFeature, barackObama));
+
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).getWikidataId(), is("Q1011"));
+        assertThat(results.get(0).getPredictedClass(), is("LOCATION"));
+        assertThat(results.get(1).getPredictedClass(), is("OTHER"));
+        assertThat(results.get(2).getPredictedClass(), is(wikidataNERPredictor1.predict(barackObama).getPredictedClass()));
+    }
+}
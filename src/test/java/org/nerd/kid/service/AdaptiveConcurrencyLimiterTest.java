@@ -0,0 +1,110 @@
+package org.nerd.kid.service;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void testLimitGrowsUpToTheCapAndShrinksOnFailures() throws Exception {
+        AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter(2, 4, true);
+        for (int i = 0; i < 100; i++) {
+            target.execute(() -> null);
+        }
+        assertThat(target.getLimit(), is(4));
+
+        try {
+            target.execute(() -> {
+                throw new IOException("Remote service exception.");
+            });
+            fail("The error of the call must be thrown");
+        } catch (IOException e) {
+            // expected
+        }
+        assertThat(target.getLimit(), lessThan(4));
+        assertThat(target.getInFlight(), is(0));
+    }
+
+    @Test
+    public void testCallsBeyondTheLimitWait() throws Exception {
+        AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter(1, 2, false);
+        assertThat(target.getLimit(), is(2));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                executor.execute(() -> {
+                    try {
+                        target.execute(() -> {
+                            maxInFlight.accumulateAndGet(target.getInFlight(), Math::max);
+                            return release.await(5, TimeUnit.SECONDS);
+                        });
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (target.getWaiting() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(target.getWaiting(), is(2));
+            assertThat(target.getInFlight(), is(2));
+            release.countDown();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        assertThat(maxInFlight.get(), is(2));
+        assertThat(target.getLimit(), greaterThan(1));
+    }
+
+    @Test
+    public void testAsyncCallsBeyondTheLimitAreQueuedWithoutThread() throws Exception {
+        AdaptiveConcurrencyLimiter target = new AdaptiveConcurrencyLimiter(1, 2, false);
+        // the tasks given to the executor, run by the test
+        List<Runnable> tasks = new ArrayList<>();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int call = i;
+            calls.add(target.executeAsync(() -> call, tasks::add));
+        }
+        // only the calls allowed by the limit are given to the executor
+        assertThat(tasks.size(), is(2));
+        assertThat(target.getInFlight(), is(2));
+        assertThat(target.getWaiting(), is(2));
+
+        // every call ended gives its room to a call queued
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        assertThat(tasks.size(), is(4));
+        assertThat(target.getInFlight(), is(0));
+        assertThat(target.getWaiting(), is(0));
+        for (int i = 0; i < 4; i++) {
+            assertThat(calls.get(i).get(), is(i));
+        }
+
+        CompletableFuture<Object> failure = target.executeAsync(() -> {
+            throw new IOException("Remote service exception.");
+        }, Runnable::run);
+        assertThat(failure.isCompletedExceptionally(), is(true));
+        assertThat(target.getInFlight(), is(0));
+    }
+}